@@ -7,6 +7,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import uk.ac.soton.comp1206.game.MultiMedia;
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.journal.Log4jJournalSink;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
 /**
@@ -34,6 +36,10 @@ public class App extends Application {
      */
     public static void main(String[] args) {
         logger.info("Starting client");
+        //game events go to the log at debug level unless run with -Djournal.log=false
+        if (!"false".equals(System.getProperty("journal.log"))) {
+            EventJournal.global().startDraining(new Log4jJournalSink());
+        }
         launch();
     }
 
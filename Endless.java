@@ -0,0 +1,145 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.game.EndlessEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Command-line entry point that plays the endless mode headless on a very large board, sweeping pieces across it in
+ * bands of three rows, and prints the score and how much of the board is held in memory. Does not start JavaFX.
+ *
+ * Usage: Endless [--size N] [--pieces N] [--seed N]
+ */
+public class Endless {
+
+    /**
+     * Play the endless game
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) {
+        int size = 10000;
+        int pieces = 1000000;
+        long seed = System.nanoTime();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--size" -> size = Integer.parseInt(value);
+                case "--pieces" -> pieces = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+                }
+            }
+        }
+
+        if (size < 3) {
+            System.err.println("The board must be at least 3x3");
+            System.exit(1);
+        }
+
+        System.out.printf("Playing %d pieces on a %dx%d endless board, seed %d%n", pieces, size, size, seed);
+        var engine = new EndlessEngine(size, size, seed);
+        engine.initialiseGame();
+
+        //each piece fills the first gap in the band if it can, and otherwise goes on the end of what is filled so far
+        int bands = size / 3;
+        int band = 0;
+        int cursor = 0;
+        int frontier = 0;
+        long start = System.nanoTime();
+        while (engine.getPiecesPlayed() < pieces) {
+            int y = band * 3 + 1;
+            int gap = firstGap(engine, cursor, y);
+            boolean played = playCovering(engine, cursor, gap, y);
+            if (!played) {
+                engine.swapCurrentPiece();
+                played = playCovering(engine, cursor, gap, y);
+            }
+            if (!played) {
+                int x = playAhead(engine, Math.max(cursor + 1, frontier - 1), y);
+                played = x >= 0;
+                frontier = Math.max(frontier, x);
+            }
+            if (!played) {
+                //nothing fits the gap or the rest of the band, so wait for new pieces
+                engine.timerExpired();
+                continue;
+            }
+            while (cursor < size && firstGap(engine, cursor, y) < 0) {
+                cursor++;
+            }
+            frontier = Math.max(frontier, cursor);
+            if (cursor >= size) {
+                //the band was filled, and cleared as it filled
+                band = (band + 1) % bands;
+                cursor = 0;
+                frontier = 0;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        var grid = engine.getGrid();
+        System.out.printf("Score:           %d (level %d)%n", engine.getScore(), engine.getLevel());
+        System.out.printf("Lines cleared:   %d%n", engine.getLinesCleared());
+        System.out.printf("Filled cells:    %d in %d chunks%n", grid.getFilledCount(), grid.getChunkCount());
+        System.out.printf("Throughput:      %.0f pieces/s%n", engine.getPiecesPlayed() / seconds);
+    }
+
+    /**
+     * Find the first empty cell in a band's column
+     *
+     * @return the row, or -1 if the column is filled
+     */
+    private static int firstGap(EndlessEngine engine, int x, int y) {
+        var grid = engine.getGrid();
+        for (int row = y - 1; row <= y + 1; row++) {
+            if (!grid.isOccupied(x, row)) return row;
+        }
+        return -1;
+    }
+
+    /**
+     * Play the current piece in any rotation and within the band so that it covers the given cell
+     */
+    private static boolean playCovering(EndlessEngine engine, int gapX, int gapY, int y) {
+        for (int rotation = 0; rotation < 4; rotation++) {
+            var piece = engine.getCurrentPiece();
+            for (int block = 0; block < piece.getBlockCount(); block++) {
+                int x = gapX - piece.getOffsetX(block);
+                int centre = gapY - piece.getOffsetY(block);
+                if (inBand(piece, centre, y) && engine.playPiece(x, centre)) return true;
+            }
+            engine.rotateCurrentPiece(1);
+        }
+        return false;
+    }
+
+    /**
+     * Play the current piece in any rotation at the first spot within the band from the given column onwards
+     *
+     * @return the column the piece was centred on, or -1 if it fits nowhere
+     */
+    private static int playAhead(EndlessEngine engine, int from, int y) {
+        for (int x = from; x <= engine.getCols(); x++) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                var piece = engine.getCurrentPiece();
+                for (int centre = y - 1; centre <= y + 1; centre++) {
+                    if (inBand(piece, centre, y) && engine.playPiece(x, centre)) return x;
+                }
+                engine.rotateCurrentPiece(1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether a piece centred on the given row stays within the band of three rows around y
+     */
+    private static boolean inBand(GamePiece piece, int centre, int y) {
+        for (int block = 0; block < piece.getBlockCount(); block++) {
+            if (Math.abs(centre + piece.getOffsetY(block) - y) > 1) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.server.GameServer;
+
+import java.io.IOException;
+
+/**
+ * Command-line entry point that runs the game server, hosting headless games for clients connecting over WebSocket.
+ * Does not start JavaFX.
+ *
+ * Usage: Server [--port 9700] [--size 5]
+ */
+public class Server {
+
+    /**
+     * Run the server
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 9700;
+        int size = 5;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(value);
+                case "--size" -> size = Integer.parseInt(value);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+                }
+            }
+        }
+
+        //nothing drains the journal here, so do not spend time filling it
+        EventJournal.global().disable();
+
+        try (var server = new GameServer(port, size, size)) {
+            server.run();
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.simulation.BatchSimulation;
+import uk.ac.soton.comp1206.simulation.GreedyPolicy;
+import uk.ac.soton.comp1206.simulation.PlacementPolicy;
+import uk.ac.soton.comp1206.simulation.RandomPolicy;
+
+import java.util.function.Supplier;
+
+/**
+ * Command-line entry point that plays a batch of headless games across every core and prints statistics on the
+ * results and on engine throughput. Does not start JavaFX.
+ *
+ * Usage: Simulator [--games N] [--threads N] [--size N] [--seed N] [--policy random|greedy] [--max-moves N]
+ */
+public class Simulator {
+
+    /**
+     * Run the simulation
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long games = 10000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int size = 5;
+        long seed = System.nanoTime();
+        String policy = "greedy";
+        int maxMoves = 10000;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games" -> games = Long.parseLong(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--size" -> size = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--policy" -> policy = value;
+                case "--max-moves" -> maxMoves = Integer.parseInt(value);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+                }
+            }
+        }
+
+        Supplier<PlacementPolicy> policies = switch (policy) {
+            case "random" -> RandomPolicy::new;
+            case "greedy" -> GreedyPolicy::new;
+            default -> throw new IllegalArgumentException("Unknown policy: " + policy);
+        };
+
+        //nothing drains the journal here, so do not spend time filling it
+        EventJournal.global().disable();
+
+        System.out.printf("Simulating %d games of %dx%d with the %s policy on %d threads, seed %d%n",
+                games, size, size, policy, threads, seed);
+        var simulation = new BatchSimulation(size, size, seed, maxMoves, policies);
+        long start = System.nanoTime();
+        var stats = simulation.run(games, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        stats.print(System.out);
+        System.out.printf("Throughput:      %.0f games/s, %.0f moves/s%n",
+                stats.getGames() / seconds, stats.getTotalMoves() / seconds);
+    }
+
+}
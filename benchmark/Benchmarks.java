@@ -0,0 +1,28 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, which reports the bytes allocated per operation next to each time.
+ *
+ * Usage: Benchmarks [regex], where the regex picks the benchmarks to run (all of them by default), for example
+ * "GridBenchmark.canPlay".
+ */
+public class Benchmarks {
+
+    /**
+     * Run the benchmarks
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) throws RunnerException {
+        var include = args.length > 0 ? args[0] : Benchmarks.class.getPackageName() + ".*";
+        var options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,113 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.game.PlacementTable;
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.simulation.BoardBatch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks stepping many 5x5 boards by one random placement each: a BoardBatch on its vector and scalar kernels,
+ * against a Grid per board doing the same placements with canPlayPiece, playPiece and clearing full lines.
+ *
+ * Times are per board moved. Boards are emptied every ROUNDS moves, so most moves are made on boards with room left.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BoardBatchBenchmark {
+
+    private static final int BOARDS = 4096;
+    private static final int ROUNDS = 16;
+    private static final int SIZE = 5;
+
+    @Param({"true", "false"})
+    public boolean vectorised;
+
+    private BoardBatch batch;
+    private final Grid[] grids = new Grid[BOARDS];
+
+    /**
+     * For each round, each board's placement: as cells for the batch, and as a piece and position for the grids
+     */
+    private final int[][] moves = new int[ROUNDS][BOARDS];
+    private final GamePiece[][] pieces = new GamePiece[ROUNDS][BOARDS];
+    private final int[][] x = new int[ROUNDS][BOARDS];
+    private final int[][] y = new int[ROUNDS][BOARDS];
+
+    private int round = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EventJournal.global().disable();
+        batch = new BoardBatch(SIZE, SIZE, BOARDS, vectorised);
+        var table = PlacementTable.forSize(SIZE, SIZE);
+        var random = new PieceGenerator(1);
+        for (var r = 0; r < ROUNDS; r++) {
+            for (var board = 0; board < BOARDS; board++) {
+                var piece = random.nextPiece();
+                var placement = (int) (((random.nextLong() >>> 32) * table.getPlacementCount(piece)) >>> 32);
+                moves[r][board] = batch.getPlacementCells(piece, placement);
+                pieces[r][board] = GamePiece.createPiece(piece, table.getPlacementRotation(piece, placement));
+                x[r][board] = table.getPlacementX(piece, placement);
+                y[r][board] = table.getPlacementY(piece, placement);
+            }
+        }
+        for (var board = 0; board < BOARDS; board++) {
+            grids[board] = new Grid(SIZE, SIZE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public BoardBatch batchStep() {
+        if (round == ROUNDS) {
+            round = 0;
+            for (var board = 0; board < BOARDS; board++) {
+                batch.reset(board);
+            }
+        }
+        batch.step(moves[round++]);
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public Grid[] gridStep() {
+        if (round == ROUNDS) {
+            round = 0;
+            for (var grid : grids) {
+                grid.clear();
+            }
+        }
+        var r = round++;
+        for (var board = 0; board < BOARDS; board++) {
+            var grid = grids[board];
+            if (grid.canPlayPiece(pieces[r][board], x[r][board], y[r][board])) {
+                grid.playPiece(pieces[r][board], x[r][board], y[r][board]);
+                grid.findFullLines();
+                grid.clearFullLines();
+            }
+        }
+        return grids;
+    }
+}
@@ -0,0 +1,39 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+/**
+ * Builds the boards the benchmarks run against, filled to a given density from a fixed seed so every run and every
+ * change to the grid is measured on the same boards.
+ */
+class Boards {
+
+    private Boards() {
+    }
+
+    /**
+     * Fill cells of a grid at random until the given fraction of it is filled
+     *
+     * @param grid    the grid, which should be empty
+     * @param density fraction of cells to fill, from 0 to 1
+     * @param seed    seed for choosing the cells
+     */
+    static void fill(Grid grid, double density, long seed) {
+        var random = new PieceGenerator(seed);
+        var cells = grid.getCols() * grid.getRows();
+        var target = (int) Math.round(cells * density);
+        var filled = 0;
+        while (filled < target) {
+            var index = (int) (((random.nextLong() >>> 32) * cells) >>> 32);
+            var x = index % grid.getCols();
+            var y = index / grid.getCols();
+            if (grid.get(x, y) != 0) continue;
+            grid.set(x, y, 1 + (int) (((random.nextLong() >>> 32) * 15) >>> 32));
+            filled++;
+        }
+        //full lines would have been cleared in a real game, so leave the board as afterPiece would
+        grid.findFullLines();
+        grid.clearFullLines();
+    }
+}
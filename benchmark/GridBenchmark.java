@@ -0,0 +1,204 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Grid hot path: checking and playing pieces, reading cells at the edges, clearing lines after a
+ * placement and clearing the whole grid. Each runs on every board size from 5x5 to 100x100 and every fill density.
+ *
+ * Run through Benchmarks, which adds the GC profiler so allocation rates are reported alongside the times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+
+    @Param({"5", "10", "25", "50", "100"})
+    public int size;
+
+    @Param({"0.0", "0.25", "0.5", "0.75", "0.95"})
+    public double density;
+
+    private GameEngine engine;
+    private Grid grid;
+
+    /**
+     * The Plus, which touches all four neighbours of its centre
+     */
+    private final GamePiece piece = GamePiece.createPiece(2);
+
+    /**
+     * An empty cell to play a Dot into and take it out again, or -1 if the board has none
+     */
+    private int emptyX = -1;
+    private int emptyY = -1;
+
+    /**
+     * The value of every cell on the freshly filled board, at index y * size + x, for putting back cleared cells
+     */
+    private int[] cells;
+
+    /**
+     * Build the board afresh for each iteration, so every iteration starts from the same board, score and multiplier
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        engine = new GameEngine(size, size, 1);
+        engine.initialiseGame();
+        grid = engine.getGrid();
+        Boards.fill(grid, density, size * 31L);
+        cells = new int[size * size];
+        for (var y = 0; y < size; y++) {
+            for (var x = 0; x < size; x++) {
+                cells[y * size + x] = grid.get(x, y);
+            }
+        }
+        emptyX = -1;
+        emptyY = -1;
+        for (var y = 0; y < size && emptyX < 0; y++) {
+            for (var x = 0; x < size && emptyX < 0; x++) {
+                if (grid.get(x, y) == 0) {
+                    emptyX = x;
+                    emptyY = y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the Plus at every centre on the board, including those hanging off the edges
+     */
+    @Benchmark
+    public int canPlayPieceEverywhere() {
+        var fits = 0;
+        for (var y = -1; y <= size; y++) {
+            for (var x = -1; x <= size; x++) {
+                if (grid.canPlayPiece(piece, x, y)) fits++;
+            }
+        }
+        return fits;
+    }
+
+    /**
+     * Play a Dot into an empty cell and empty it again
+     */
+    @Benchmark
+    public void playPieceAndUndo(Blackhole blackhole) {
+        if (emptyX < 0) return;
+        grid.playPiece(GamePiece.createPiece(3), emptyX, emptyY);
+        blackhole.consume(grid.get(emptyX, emptyY));
+        grid.set(emptyX, emptyY, 0);
+    }
+
+    /**
+     * Read every cell on and just outside the border, where reads used to fall outside the board
+     */
+    @Benchmark
+    public int getAtEdges() {
+        var total = 0;
+        for (var i = -1; i <= size; i++) {
+            total += grid.get(i, -1) + grid.get(i, 0) + grid.get(i, size - 1) + grid.get(i, size);
+            total += grid.get(-1, i) + grid.get(0, i) + grid.get(size - 1, i) + grid.get(size, i);
+        }
+        return total;
+    }
+
+    /**
+     * Check for full lines after a placement that completes none
+     */
+    @Benchmark
+    public int afterPieceNoClear() {
+        engine.afterPiece();
+        return engine.getScore();
+    }
+
+    /**
+     * Fill the middle row and clear it with afterPiece, then put back the cells it cleared so the next call runs on
+     * the same board
+     */
+    @Benchmark
+    public int afterPieceClearingRow() {
+        var row = size / 2;
+        for (var x = 0; x < size; x++) {
+            if (grid.get(x, row) == 0) grid.set(x, row, 1);
+        }
+        engine.afterPiece();
+        var score = engine.getScore();
+
+        //filling the row may have completed columns too, so restore every cleared cell rather than just the row
+        var cleared = grid.getFullLineCells();
+        for (var word = 0; word < cleared.length; word++) {
+            var bits = cleared[word];
+            while (bits != 0) {
+                var index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (cells[index] != 0) grid.set(index % size, index / size, cells[index]);
+                bits &= bits - 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Clear a board filled to the benchmark density. Each call clears a batch of boards, so the cost of refilling them
+     * between calls is spread over many clears rather than timed against each one.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ClearState.GRIDS)
+    public Grid[] clear(ClearState state) {
+        for (var grid : state.grids) {
+            grid.clear();
+        }
+        return state.grids;
+    }
+
+    /**
+     * A batch of grids refilled before every call, so clear always has cells to empty
+     */
+    @State(Scope.Thread)
+    public static class ClearState {
+
+        static final int GRIDS = 64;
+
+        private final Grid[] grids = new Grid[GRIDS];
+        private int size;
+        private double density;
+
+        @Setup(Level.Trial)
+        public void setup(GridBenchmark benchmark) {
+            size = benchmark.size;
+            density = benchmark.density;
+            for (var i = 0; i < GRIDS; i++) {
+                grids[i] = new Grid(size, size);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void refill() {
+            for (var i = 0; i < GRIDS; i++) {
+                grids[i].clear();
+                Boards.fill(grids[i], density, size * 31L + i);
+            }
+        }
+    }
+}
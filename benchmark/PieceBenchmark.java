@@ -0,0 +1,134 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PlacementTable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for pieces: creating and rotating them, spawning the next one, and finding every legal placement of a
+ * piece on a board. The placement search is the inner loop of any bot or hint, so its cost per board is measured both
+ * the straightforward way, checking every rotation at every cell with Grid.canPlayPiece, and through the engine's
+ * PlacementTable.
+ *
+ * Times for the per-piece benchmarks are per piece, averaged over all 15.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+
+    @Param({"5", "10", "25"})
+    public int size;
+
+    @Param({"0.0", "0.25", "0.5", "0.75", "0.95"})
+    public double density;
+
+    private GameEngine engine;
+    private Grid grid;
+    private PlacementTable placements;
+
+    /**
+     * One piece of each kind, in its starting rotation
+     */
+    private final GamePiece[] pieces = new GamePiece[GamePiece.PIECES];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new GameEngine(size, size, 1);
+        engine.initialiseGame();
+        grid = engine.getGrid();
+        placements = engine.getPlacements();
+        Boards.fill(grid, density, size * 31L);
+        for (var piece = 0; piece < GamePiece.PIECES; piece++) {
+            pieces[piece] = GamePiece.createPiece(piece);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GamePiece.PIECES)
+    public void createPiece(Blackhole blackhole) {
+        for (var piece = 0; piece < GamePiece.PIECES; piece++) {
+            blackhole.consume(GamePiece.createPiece(piece));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GamePiece.PIECES)
+    public void rotate(Blackhole blackhole) {
+        for (var piece : pieces) {
+            blackhole.consume(piece.rotate());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GamePiece.PIECES)
+    public void rotateThreeTimes(Blackhole blackhole) {
+        for (var piece : pieces) {
+            blackhole.consume(piece.rotate(3));
+        }
+    }
+
+    /**
+     * Spawn a piece. Game.spawnPiece hands straight to the engine, which needs no FX toolkit to run.
+     */
+    @Benchmark
+    public GamePiece spawnPiece() {
+        return engine.spawnPiece();
+    }
+
+    /**
+     * Count every legal rotation and position of each piece by checking each one against the grid
+     */
+    @Benchmark
+    @OperationsPerInvocation(GamePiece.PIECES)
+    public int legalPlacementsByGrid() {
+        var legal = 0;
+        for (var piece : pieces) {
+            for (var rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                var rotated = piece.rotate(rotation);
+                for (var y = 0; y < size; y++) {
+                    for (var x = 0; x < size; x++) {
+                        if (grid.canPlayPiece(rotated, x, y)) legal++;
+                    }
+                }
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Count every distinct legal placement of each piece from the engine's placement table
+     */
+    @Benchmark
+    @OperationsPerInvocation(GamePiece.PIECES)
+    public int legalPlacementsByTable() {
+        var legal = 0;
+        for (var piece = 0; piece < GamePiece.PIECES; piece++) {
+            var count = placements.getPlacementCount(piece);
+            for (var i = 0; i < count; i++) {
+                if (placements.fits(grid, piece, i)) legal++;
+            }
+        }
+        return legal;
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.soton.comp1206.component;
+
+/**
+ * Helpers for coordinates packed into a single int, with the column in the top 16 bits and the row in the bottom 16.
+ * Both are signed, so coordinates just off the board (such as -1) pack and unpack safely.
+ *
+ * Packed coordinates can be stored in an IntSet or IntObjectMap with no allocation or boxing, where a
+ * GameBlockCoordinate would need an object for every cell.
+ */
+public final class Coordinates {
+
+    private Coordinates() {
+    }
+
+    /**
+     * Pack a column and row into an int
+     *
+     * @param x column, from -32768 to 32767
+     * @param y row, from -32768 to 32767
+     * @return the packed coordinate
+     */
+    public static int pack(int x, int y) {
+        return x << 16 | (y & 0xFFFF);
+    }
+
+    /**
+     * Get the column of a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @return column
+     */
+    public static int xOf(int packed) {
+        return packed >> 16;
+    }
+
+    /**
+     * Get the row of a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @return row
+     */
+    public static int yOf(int packed) {
+        return (short) packed;
+    }
+
+    /**
+     * Add a row and column offset to a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @param x      additional columns
+     * @param y      additional rows
+     * @return the packed result
+     */
+    public static int add(int packed, int x, int y) {
+        return pack(xOf(packed) + x, yOf(packed) + y);
+    }
+
+    /**
+     * Subtract a row and column offset from a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @param x      columns to remove
+     * @param y      rows to remove
+     * @return the packed result
+     */
+    public static int subtract(int packed, int x, int y) {
+        return pack(xOf(packed) - x, yOf(packed) - y);
+    }
+
+    /**
+     * Pack the cell at an index of a Grid's occupancy bitset (y * cols + x)
+     *
+     * @param index the cell index
+     * @param cols  number of columns in the grid
+     * @return the packed coordinate
+     */
+    public static int ofIndex(int index, int cols) {
+        return pack(index % cols, index / cols);
+    }
+
+    /**
+     * Describe a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @return x,y
+     */
+    public static String toString(int packed) {
+        return xOf(packed) + "," + yOf(packed);
+    }
+}
@@ -42,6 +42,17 @@ public class GameBlock extends Canvas {
             Color.MEDIUMPURPLE,
             Color.PURPLE
     };
+
+    /**
+     * The colours a cleared block fades through, from opaque blue down in steps of 0.05 opacity
+     */
+    private static final Color[] FADE_COLOURS = new Color[20];
+    static {
+        for (int frame = 0; frame < FADE_COLOURS.length; frame++) {
+            FADE_COLOURS[frame] = Color.rgb(0, 0, 255, 1 - frame * 0.05);
+        }
+    }
+
     private static final Logger logger = LogManager.getLogger(GameBlock.class);
     private final GameBoard gameBoard;
     private final double width;
@@ -61,6 +72,12 @@ public class GameBlock extends Canvas {
     private boolean center = false;
     private boolean hover = false;
 
+    /**
+     * The animation fading this block out after its line is cleared, and how far through it is
+     */
+    private AnimationTimer fadeTimer = null;
+    private int fadeFrame = 0;
+
     /**
      * Create a new single Game Block
      *
@@ -247,30 +264,27 @@ public class GameBlock extends Canvas {
      * fade out when lines are cleared
      */
     public void fadeOut(){
-        logger.info("Fading Out");
         //first paint empty
         paintEmpty();
         //line to be cleared - paint blue
         paintColor(Color.BLUE);
 
-        AnimationTimer timer = new AnimationTimer() {
-            //iniatial opacity of the blocks
-            double opacity = 1;
-            @Override
-            public void handle(long l) {
-                paintColor(Color.rgb(0,0,255,opacity));
-                //opacity slowly decreases - fade out effect
-                opacity-=0.05;
-                if(opacity <= 0){
-                    logger.info("opacity reached zero - blocks faded out");
-                    stop();
-                    //paint those blocks empty
-                    paintEmpty();
-
+        //the timer is made once and restarted for each fade, so clearing lines allocates nothing per block
+        if (fadeTimer == null) {
+            fadeTimer = new AnimationTimer() {
+                @Override
+                public void handle(long l) {
+                    paintColor(FADE_COLOURS[fadeFrame]);
+                    //opacity slowly decreases - fade out effect
+                    if (++fadeFrame == FADE_COLOURS.length) {
+                        stop();
+                        //paint those blocks empty
+                        paintEmpty();
+                    }
                 }
-            }
-        };
-        timer.start();
-
+            };
+        }
+        fadeFrame = 0;
+        fadeTimer.start();
     }
 }
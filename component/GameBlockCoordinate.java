@@ -5,7 +5,8 @@ import javafx.beans.NamedArg;
 /**
  * Represents a row and column representation of a block in the grid. Holds the x (column) and y (row).
  *
- * Useful for use in a set or list or other form of collection.
+ * Useful for use in a set or list or other form of collection. Where many coordinates are stored, prefer packed ints
+ * (see Coordinates) in an IntSet.
  */
 public class GameBlockCoordinate {
 
@@ -19,12 +20,6 @@ public class GameBlockCoordinate {
      */
     private final int y;
 
-    /**
-     * A hash is computed to enable comparisons between this and other GameBlockCoordinates.
-     */
-    private int hash = 0;
-
-
     /**
      * Create a new GameBlockCoordinate which stores a row and column reference to a block
      * @param x column
@@ -110,13 +105,16 @@ public class GameBlockCoordinate {
      * @return hash code
      */
     @Override public int hashCode() {
-        if (hash == 0) {
-            long bits = 7L;
-            bits = 31L * bits + Double.doubleToLongBits(getX());
-            bits = 31L * bits + Double.doubleToLongBits(getY());
-            hash = (int) (bits ^ (bits >> 32));
-        }
-        return hash;
+        //the packed form is unique, but its halves would cancel out in HashMap's spreading, so mix it first
+        return pack() * 0x9E3779B9;
+    }
+
+    /**
+     * Pack this GameBlockCoordinate into an int, for storing without an object
+     * @return the packed coordinate (see Coordinates)
+     */
+    public int pack() {
+        return Coordinates.pack(x, y);
     }
 
     /**
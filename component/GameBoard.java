@@ -9,9 +9,9 @@ import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.RightClickedListener;
 import uk.ac.soton.comp1206.game.Grid;
 import uk.ac.soton.comp1206.game.MultiMedia;
+import uk.ac.soton.comp1206.util.IntSet;
 
 import java.security.PublicKey;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -198,27 +198,42 @@ public class GameBoard extends GridPane {
     }
 
     public void rightClick(MouseEvent e, GameBlock block) {
-        logger.info("block rotated {} ...", block);
         if (e.getButton().equals(MouseButton.SECONDARY)) {
-            if (blockClickedListener != null) {
-                blockClickedListener.blockClicked(block);
+            if (rightClickedListener != null) {
+                rightClickedListener.rightClicked();
             }
         }
     }
 
     public void leftClick(MouseEvent e, GameBlock block) {
-        logger.info("block swapped {}...", block);
         if (e.getButton().equals(MouseButton.PRIMARY)) {
             if (blockClickedListener != null) {
                 blockClickedListener.blockClicked(block);
             }
         }
     }
-    public void fadeOut(HashSet<GameBlockCoordinate> gameBlocks){
-        for(GameBlockCoordinate block: gameBlocks){
-            this.getBlock(block.getX(),block.getY()).fadeOut();
+    public void fadeOut(IntSet gameBlocks){
+        gameBlocks.forEach(block -> {
+            this.getBlock(Coordinates.xOf(block),Coordinates.yOf(block)).fadeOut();
             MultiMedia.playAudio("clear.wav");
+        });
+    }
+
+    /**
+     * Fade out the cleared blocks, given as a bitset with one bit per cell at index y * cols + x
+     * @param cells - the cleared cells
+     * @param cols - number of columns in the grid
+     */
+    public void fadeOut(long[] cells, int cols){
+        for (int word = 0; word < cells.length; word++) {
+            long bits = cells[word];
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                this.getBlock(index % cols, index / cols).fadeOut();
+                bits &= bits - 1;
+            }
         }
+        MultiMedia.playAudio("clear.wav");
     }
 
 }
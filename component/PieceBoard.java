@@ -22,13 +22,11 @@ public class PieceBoard extends GameBoard{
      * @param gamePiece
      */
     public void showPiece(GamePiece gamePiece){
-        //2d array to store x and y coordinates of a game block
-        int[][] blocks = gamePiece.getBlocks();
-        // 2 loops to search for all the blocks in gameBlock.getBlock()
-        for(int x = 0; x < blocks.length; x++){
-            for(int y = 0; y < blocks[x].length; y++){
+        // 2 loops to search for all the blocks in gamePiece.getBlock()
+        for(int x = 0; x < 3; x++){
+            for(int y = 0; y < 3; y++){
                 //sets the blocks onto a grid (x,y and value)
-                grid.set(x,y,blocks[x][y]);
+                grid.set(x,y,gamePiece.getBlock(x,y));
             }
         }
     }
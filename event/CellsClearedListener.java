@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * A LineClearedListener that is given the cleared cells as a bitset rather than a set of coordinates, so clearing lines
+ * allocates nothing.
+ */
+public interface CellsClearedListener {
+    /**
+     * this listener handles the clearing of blocks
+     * @param cells - the cleared cells, one bit per cell at index y * cols + x. The array is reused for the next clear,
+     *              so it should be read before returning and not modified.
+     * @param cols  - number of columns in the grid, to turn an index back into x and y
+     */
+    public void cellsCleared(long[] cells, int cols);
+}
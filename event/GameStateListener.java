@@ -0,0 +1,14 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameSnapshot;
+
+/**
+ * listens for the game's state changing - called on the JavaFX thread with the latest state once the UI catches up
+ * with the commands the game has applied
+ */
+public interface GameStateListener {
+    /**
+     * @param snapshot the state of the game after the latest command
+     */
+    public void gameState(GameSnapshot snapshot);
+}
@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameStats;
+
+/**
+ * The GameStatsListener is told on the JavaFX thread when the score, level, lives or multiplier shown change, at most
+ * once each time the UI catches up with the game
+ */
+public interface GameStatsListener {
+    /**
+     * this listener handles new statistics
+     * @param stats - the statistics after the latest command
+     */
+    public void gameStats(GameStats stats);
+}
@@ -1,13 +1,11 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-
-import java.util.HashSet;
+import uk.ac.soton.comp1206.util.IntSet;
 
 public interface LineClearedListener {
     /**
      * this listener handles the clearing of blocks
-     * @param linesCleared  - coordinates to be cleared
+     * @param linesCleared  - coordinates to be cleared, packed as by Coordinates
      */
-    public void lineCleared(HashSet<GameBlockCoordinate> linesCleared);
+    public void lineCleared(IntSet linesCleared);
 }
@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * The PiecePreviewListener is told about every piece in the preview window at once, whenever the pieces in play change
+ */
+public interface PiecePreviewListener {
+    /**
+     * this listener handles a new preview window
+     * @param pieces - the pieces coming after the following piece, the soonest first. The array is reused for the next
+     *               window, so it should be read before returning and not modified.
+     */
+    public void piecesPreviewed(GamePiece[] pieces);
+}
@@ -0,0 +1,528 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.util.IntObjectMap;
+
+import java.util.Arrays;
+
+/**
+ * The ChunkedGrid holds the board for the endless mode (see EndlessEngine), where the board can be far too large to
+ * keep a value for every cell. It has the same operations as Grid for placing pieces and finding and clearing full lines, but holds no
+ * JavaFX properties and keeps no Zobrist hash.
+ *
+ * The board is split into 8x8 chunks, each holding the values and occupancy of its 64 cells and the number of filled
+ * cells in each of its rows and columns. Chunks are made when a cell in them first fills and dropped again when their
+ * last cell empties, so memory follows the number of filled cells rather than the area of the board.
+ *
+ * A line across the board is full when every chunk it crosses has its part of the line full. The number of full parts
+ * of each line is counted for each band of 8 rows or columns that has any, so checking and clearing lines after a
+ * placement only touches the lines the placement filled and the chunks along them.
+ */
+public class ChunkedGrid {
+
+    /**
+     * Chunks are CHUNK_SIZE cells square
+     */
+    public static final int CHUNK_SIZE = 8;
+    private static final int CHUNK_SHIFT = 3;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * One 8x8 chunk of the board. Cell (x, y) within the chunk is bit y * 8 + x of the occupancy.
+     */
+    private static final class Chunk {
+        private final int chunkX;
+        private final int chunkY;
+        private final byte[] values = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        private final byte[] rowCounts = new byte[CHUNK_SIZE];
+        private final byte[] columnCounts = new byte[CHUNK_SIZE];
+        private long occupied;
+        private int filled;
+
+        private Chunk(int chunkX, int chunkY) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+        }
+    }
+
+    /**
+     * The number of columns and rows in this grid
+     */
+    private final int cols;
+    private final int rows;
+
+    /**
+     * The number of chunks across and down the board
+     */
+    private final int chunksAcross;
+    private final int chunksDown;
+
+    /**
+     * The chunks holding any filled cells, in an open-addressed table keyed by chunk column and row
+     */
+    private long[] keys = new long[16];
+    private Chunk[] chunks = new Chunk[16];
+    private int chunkCount = 0;
+
+    /**
+     * For each band of 8 rows or columns with any full parts, the number of chunks in which each of its lines is full,
+     * followed by the total over the band
+     */
+    private final IntObjectMap<int[]> rowBands = new IntObjectMap<>();
+    private final IntObjectMap<int[]> columnBands = new IntObjectMap<>();
+
+    /**
+     * The rows and columns that have become full since the last call to findFullLines. A line filled, emptied and
+     * filled again may be noted twice.
+     */
+    private int[] pendingRows = new int[8];
+    private int[] pendingColumns = new int[8];
+    private int pendingRowCount = 0;
+    private int pendingColumnCount = 0;
+
+    /**
+     * The full rows and columns found by the last call to findFullLines
+     */
+    private int[] fullRows = new int[8];
+    private int[] fullColumns = new int[8];
+    private int fullRowCount = 0;
+    private int fullColumnCount = 0;
+
+    /**
+     * The number of filled cells on the board
+     */
+    private long filledCount = 0;
+
+    /**
+     * Create a new, empty ChunkedGrid with the specified number of columns and rows
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public ChunkedGrid(int cols, int rows) {
+        if (cols <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Grid must be at least 1x1, not " + cols + "x" + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        chunksAcross = (cols + CHUNK_MASK) >>> CHUNK_SHIFT;
+        chunksDown = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Empty every cell, dropping all the chunks
+     */
+    public void clear() {
+        keys = new long[16];
+        chunks = new Chunk[16];
+        chunkCount = 0;
+        rowBands.clear();
+        columnBands.clear();
+        pendingRowCount = 0;
+        pendingColumnCount = 0;
+        fullRowCount = 0;
+        fullColumnCount = 0;
+        filledCount = 0;
+    }
+
+    /**
+     * Get the value at the given x and y index within the grid
+     *
+     * @param x column
+     * @param y row
+     * @return the value, or -1 if the cell is outside the grid
+     */
+    public int get(int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return -1;
+        var chunk = findChunk(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        if (chunk == null) return 0;
+        return chunk.values[cellOf(x, y)];
+    }
+
+    /**
+     * Check whether the cell at the given x and y index holds a block
+     *
+     * @param x column
+     * @param y row
+     * @return true if the cell is occupied
+     */
+    public boolean isOccupied(int x, int y) {
+        var chunk = findChunk(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        return chunk != null && (chunk.occupied & (1L << cellOf(x, y))) != 0;
+    }
+
+    /**
+     * Update the value at the given x and y index within the grid
+     *
+     * @param x     column
+     * @param y     row
+     * @param value the new value, from 0 to 127
+     */
+    public void set(int x, int y, int value) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No such cell: " + x + "," + y);
+        }
+        var chunkX = x >>> CHUNK_SHIFT;
+        var chunkY = y >>> CHUNK_SHIFT;
+        if (value == 0) {
+            var chunk = findChunk(chunkX, chunkY);
+            if (chunk != null) empty(chunk, x, y);
+        } else {
+            var chunk = findChunk(chunkX, chunkY);
+            if (chunk == null) chunk = addChunk(chunkX, chunkY);
+            chunk.values[cellOf(x, y)] = (byte) value;
+            fill(chunk, x, y);
+        }
+    }
+
+    /**
+     * Mark a cell as filled, counting it and noting its row and column if they are now full
+     */
+    private void fill(Chunk chunk, int x, int y) {
+        var cell = cellOf(x, y);
+        var bit = 1L << cell;
+        if ((chunk.occupied & bit) != 0) return;
+        chunk.occupied |= bit;
+        chunk.filled++;
+        filledCount++;
+
+        var localX = x & CHUNK_MASK;
+        var localY = y & CHUNK_MASK;
+        if (++chunk.rowCounts[localY] == widthOf(chunk.chunkX)) {
+            var band = rowBands.computeIfAbsent(chunk.chunkY, key -> new int[CHUNK_SIZE + 1]);
+            band[CHUNK_SIZE]++;
+            if (++band[localY] == chunksAcross) pendingRows = push(pendingRows, pendingRowCount++, y);
+        }
+        if (++chunk.columnCounts[localX] == heightOf(chunk.chunkY)) {
+            var band = columnBands.computeIfAbsent(chunk.chunkX, key -> new int[CHUNK_SIZE + 1]);
+            band[CHUNK_SIZE]++;
+            if (++band[localX] == chunksDown) pendingColumns = push(pendingColumns, pendingColumnCount++, x);
+        }
+    }
+
+    /**
+     * Empty a cell, uncounting it and dropping its chunk if it was the last filled cell there
+     *
+     * @return true if the cell held a block
+     */
+    private boolean empty(Chunk chunk, int x, int y) {
+        var cell = cellOf(x, y);
+        var bit = 1L << cell;
+        if ((chunk.occupied & bit) == 0) return false;
+        chunk.occupied &= ~bit;
+        chunk.values[cell] = 0;
+        chunk.filled--;
+        filledCount--;
+
+        var localX = x & CHUNK_MASK;
+        var localY = y & CHUNK_MASK;
+        if (chunk.rowCounts[localY]-- == widthOf(chunk.chunkX)) {
+            unfill(rowBands, chunk.chunkY, localY);
+        }
+        if (chunk.columnCounts[localX]-- == heightOf(chunk.chunkY)) {
+            unfill(columnBands, chunk.chunkX, localX);
+        }
+        if (chunk.filled == 0) removeChunk(chunk.chunkX, chunk.chunkY);
+        return true;
+    }
+
+    /**
+     * Uncount a part of a line that is no longer full, dropping the band's counts once none of its lines have any
+     */
+    private static void unfill(IntObjectMap<int[]> bands, int bandIndex, int line) {
+        var band = bands.get(bandIndex);
+        band[line]--;
+        if (--band[CHUNK_SIZE] == 0) bands.remove(bandIndex);
+    }
+
+    /**
+     * Get the number of columns a chunk covers, which is less than 8 for the last chunk across a board whose width is
+     * not a multiple of 8
+     */
+    private int widthOf(int chunkX) {
+        return Math.min(CHUNK_SIZE, cols - (chunkX << CHUNK_SHIFT));
+    }
+
+    /**
+     * Get the number of rows a chunk covers
+     */
+    private int heightOf(int chunkY) {
+        return Math.min(CHUNK_SIZE, rows - (chunkY << CHUNK_SHIFT));
+    }
+
+    private static int cellOf(int x, int y) {
+        return (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+    }
+
+    private static int[] push(int[] list, int size, int value) {
+        if (size == list.length) list = Arrays.copyOf(list, size * 2);
+        list[size] = value;
+        return list;
+    }
+
+    /**
+     * Check whether every cell in the given row holds a block
+     *
+     * @param y row
+     * @return true if the row is full
+     */
+    public boolean isRowFull(int y) {
+        var band = rowBands.get(y >>> CHUNK_SHIFT);
+        return band != null && band[y & CHUNK_MASK] == chunksAcross;
+    }
+
+    /**
+     * Check whether every cell in the given column holds a block
+     *
+     * @param x column
+     * @return true if the column is full
+     */
+    public boolean isColumnFull(int x) {
+        var band = columnBands.get(x >>> CHUNK_SHIFT);
+        return band != null && band[x & CHUNK_MASK] == chunksDown;
+    }
+
+    /**
+     * Find the rows and columns that have become full since this was last called, ready to be cleared by
+     * clearFullLines. Only the lines noted as filling up are checked.
+     *
+     * @return the number of full lines found
+     */
+    public int findFullLines() {
+        fullRowCount = 0;
+        fullColumnCount = 0;
+        for (var i = 0; i < pendingRowCount; i++) {
+            var y = pendingRows[i];
+            if (isRowFull(y) && !contains(fullRows, fullRowCount, y)) {
+                fullRows = push(fullRows, fullRowCount++, y);
+            }
+        }
+        pendingRowCount = 0;
+        for (var i = 0; i < pendingColumnCount; i++) {
+            var x = pendingColumns[i];
+            if (isColumnFull(x) && !contains(fullColumns, fullColumnCount, x)) {
+                fullColumns = push(fullColumns, fullColumnCount++, x);
+            }
+        }
+        pendingColumnCount = 0;
+        return fullRowCount + fullColumnCount;
+    }
+
+    private static boolean contains(int[] list, int size, int value) {
+        for (var i = 0; i < size; i++) {
+            if (list[i] == value) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of full rows found by the last call to findFullLines
+     *
+     * @return number of full rows
+     */
+    public int getFullRowCount() {
+        return fullRowCount;
+    }
+
+    /**
+     * Get one of the full rows found by the last call to findFullLines
+     *
+     * @param i index, below getFullRowCount()
+     * @return the row
+     */
+    public int getFullRow(int i) {
+        return fullRows[i];
+    }
+
+    /**
+     * Get the number of full columns found by the last call to findFullLines
+     *
+     * @return number of full columns
+     */
+    public int getFullColumnCount() {
+        return fullColumnCount;
+    }
+
+    /**
+     * Get one of the full columns found by the last call to findFullLines
+     *
+     * @param i index, below getFullColumnCount()
+     * @return the column
+     */
+    public int getFullColumn(int i) {
+        return fullColumns[i];
+    }
+
+    /**
+     * Empty every cell in the lines found by the last call to findFullLines, visiting only the chunks along them. A
+     * cell shared by a full row and a full column is only cleared (and counted) once.
+     *
+     * @return the number of blocks cleared
+     */
+    public int clearFullLines() {
+        var cleared = 0;
+        for (var i = 0; i < fullRowCount; i++) {
+            var y = fullRows[i];
+            for (var chunkX = 0; chunkX < chunksAcross; chunkX++) {
+                var baseX = chunkX << CHUNK_SHIFT;
+                for (var x = baseX; x < baseX + widthOf(chunkX); x++) {
+                    //the chunk is looked up again for each cell, as clearing may have dropped it
+                    var chunk = findChunk(chunkX, y >>> CHUNK_SHIFT);
+                    if (chunk == null) break;
+                    if (empty(chunk, x, y)) cleared++;
+                }
+            }
+        }
+        for (var i = 0; i < fullColumnCount; i++) {
+            var x = fullColumns[i];
+            for (var chunkY = 0; chunkY < chunksDown; chunkY++) {
+                var baseY = chunkY << CHUNK_SHIFT;
+                for (var y = baseY; y < baseY + heightOf(chunkY); y++) {
+                    var chunk = findChunk(x >>> CHUNK_SHIFT, chunkY);
+                    if (chunk == null) break;
+                    if (empty(chunk, x, y)) cleared++;
+                }
+            }
+        }
+        fullRowCount = 0;
+        fullColumnCount = 0;
+        return cleared;
+    }
+
+    /**
+     * Check whether a piece can be played centred on the given coordinates
+     *
+     * @param piece  piece to play
+     * @param placeX placement on x
+     * @param placeY placement on y
+     * @return whether the piece can be played or not
+     */
+    public boolean canPlayPiece(GamePiece piece, int placeX, int placeY) {
+        for (var block = 0; block < piece.getBlockCount(); block++) {
+            if (get(placeX + piece.getOffsetX(block), placeY + piece.getOffsetY(block)) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Play a piece centred on the given coordinates, if it fits
+     *
+     * @param piece  piece to play
+     * @param placeX placement on x
+     * @param placeY placement on y
+     */
+    public void playPiece(GamePiece piece, int placeX, int placeY) {
+        if (!canPlayPiece(piece, placeX, placeY)) return;
+        var value = piece.getValue();
+        for (var block = 0; block < piece.getBlockCount(); block++) {
+            set(placeX + piece.getOffsetX(block), placeY + piece.getOffsetY(block), value);
+        }
+    }
+
+    /**
+     * Find the chunk at the given chunk column and row
+     *
+     * @return the chunk, or null if none of its cells are filled
+     */
+    private Chunk findChunk(int chunkX, int chunkY) {
+        var key = keyOf(chunkX, chunkY);
+        var mask = chunks.length - 1;
+        for (var slot = slotOf(key, mask); chunks[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return chunks[slot];
+        }
+        return null;
+    }
+
+    private Chunk addChunk(int chunkX, int chunkY) {
+        if ((chunkCount + 1) * 2 > chunks.length) resize(chunks.length * 2);
+        var chunk = new Chunk(chunkX, chunkY);
+        insert(keyOf(chunkX, chunkY), chunk);
+        chunkCount++;
+        return chunk;
+    }
+
+    private void insert(long key, Chunk chunk) {
+        var mask = chunks.length - 1;
+        var slot = slotOf(key, mask);
+        while (chunks[slot] != null) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        chunks[slot] = chunk;
+    }
+
+    /**
+     * Drop a chunk, shifting back any chunks that probed past its slot so lookups still find them
+     */
+    private void removeChunk(int chunkX, int chunkY) {
+        var key = keyOf(chunkX, chunkY);
+        var mask = chunks.length - 1;
+        var slot = slotOf(key, mask);
+        while (keys[slot] != key || chunks[slot] == null) slot = (slot + 1) & mask;
+
+        var next = (slot + 1) & mask;
+        while (chunks[next] != null) {
+            var home = slotOf(keys[next], mask);
+            //move the entry back unless its home lies after the gap, on the way round to it
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                chunks[slot] = chunks[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        chunks[slot] = null;
+        chunkCount--;
+
+        if (chunks.length > 16 && chunkCount * 8 < chunks.length) resize(chunks.length / 2);
+    }
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldChunks = chunks;
+        keys = new long[capacity];
+        chunks = new Chunk[capacity];
+        for (var slot = 0; slot < oldChunks.length; slot++) {
+            if (oldChunks[slot] != null) insert(oldKeys[slot], oldChunks[slot]);
+        }
+    }
+
+    private static long keyOf(int chunkX, int chunkY) {
+        return (long) chunkX << 32 | chunkY;
+    }
+
+    private static int slotOf(long key, int mask) {
+        return (int) Zobrist.mix(key) & mask;
+    }
+
+    /**
+     * Get the number of chunks currently held, each covering up to 64 cells
+     *
+     * @return number of chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Get the number of filled cells on the board
+     *
+     * @return filled cells
+     */
+    public long getFilledCount() {
+        return filledCount;
+    }
+
+    /**
+     * Get the number of columns in this grid
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in this grid
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,133 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * The CommandQueue collects the player's input as small commands, one int each, until the UI next drains it and sends
+ * the whole batch to the game at once. Adding a command is O(1) and allocates nothing once the queue has grown.
+ *
+ * Each command packs its type in the top 2 bits, then a column and row (12 bits each) for placements or a number of
+ * quarter turns for rotations. Commands that undo or repeat the one before them are coalesced as they are added:
+ * rotations add up and vanish once they make a whole turn, and a swap straight after a swap cancels it. Placements
+ * are never coalesced, since the rotations and swaps either side of one apply to different pieces.
+ *
+ * A queue belongs to the thread handling input, normally the JavaFX thread.
+ */
+public class CommandQueue {
+
+    /**
+     * Command types
+     */
+    public static final int PLACE = 0;
+    public static final int ROTATE = 1;
+    public static final int SWAP = 2;
+
+    /**
+     * The queued commands
+     */
+    private int[] commands = new int[16];
+
+    /**
+     * The number of commands queued
+     */
+    private int size = 0;
+
+    /**
+     * Queue placing the current piece
+     *
+     * @param x column to centre the piece on
+     * @param y row to centre the piece on
+     */
+    public void place(int x, int y) {
+        add(pack(PLACE, x << 12 | y));
+    }
+
+    /**
+     * Queue rotating the current piece, merged with a rotation queued just before it
+     *
+     * @param rotations number of quarter turns clockwise
+     */
+    public void rotate(int rotations) {
+        var turns = rotations & 3;
+        if (size > 0 && typeOf(commands[size - 1]) == ROTATE) {
+            turns = (turns + turnsOf(commands[size - 1])) & 3;
+            size--;
+        }
+        if (turns != 0) add(pack(ROTATE, turns));
+    }
+
+    /**
+     * Queue swapping the current and following pieces, cancelling a swap queued just before it
+     */
+    public void swap() {
+        if (size > 0 && typeOf(commands[size - 1]) == SWAP) {
+            size--;
+            return;
+        }
+        add(pack(SWAP, 0));
+    }
+
+    private void add(int command) {
+        if (size == commands.length) {
+            commands = Arrays.copyOf(commands, size * 2);
+        }
+        commands[size++] = command;
+    }
+
+    private static int pack(int type, int value) {
+        return type << 30 | value;
+    }
+
+    public static int typeOf(int command) {
+        return command >>> 30;
+    }
+
+    public static int xOf(int command) {
+        return (command >>> 12) & 0xFFF;
+    }
+
+    public static int yOf(int command) {
+        return command & 0xFFF;
+    }
+
+    public static int turnsOf(int command) {
+        return command & 3;
+    }
+
+    /**
+     * Take every queued command, leaving the queue empty
+     *
+     * @return the commands in the order they were queued, or null if there were none
+     */
+    public int[] drain() {
+        if (size == 0) return null;
+        var batch = Arrays.copyOf(commands, size);
+        size = 0;
+        return batch;
+    }
+
+    /**
+     * Check whether any commands are queued
+     *
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of commands queued
+     *
+     * @return number of commands
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every queued command
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,235 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The EndlessEngine plays the endless mode: the rules of GameEngine for placing pieces, clearing lines and scoring, on
+ * a ChunkedGrid that can be far larger than any normal board. Memory follows the number of filled cells, so a
+ * 10000x10000 board costs nothing until pieces are played on it.
+ *
+ * A board this size is never full, so the endless mode has no lives and no game over: letting the timer run out only
+ * deals new pieces and resets the multiplier. Nothing scans the whole board: there is no PlacementTable or legal move
+ * check, and the player (or bot) chooses where to play.
+ *
+ * Pieces come from a seeded PieceQueue and every move is recorded, as in GameEngine, but in an EndlessMoveLog whose
+ * moves hold columns and rows far beyond a MoveLog's.
+ */
+public class EndlessEngine {
+
+    /**
+     * Number of columns and rows
+     */
+    private final int cols;
+    private final int rows;
+
+    /**
+     * The sparse board
+     */
+    private final ChunkedGrid grid;
+
+    /**
+     * Source of the random pieces
+     */
+    private final PieceGenerator generator;
+
+    /**
+     * Deals the pieces from the generator
+     */
+    private final PieceQueue pieces;
+
+    /**
+     * The moves made so far this game
+     */
+    private final EndlessMoveLog moveLog = new EndlessMoveLog();
+
+    /**
+     * score, multiplier and level
+     */
+    private int score = 0;
+    private int multiplier = 1;
+    private int level = 0;
+
+    /**
+     * Running totals for this engine: pieces placed and lines cleared
+     */
+    private int piecesPlayed = 0;
+    private int linesCleared = 0;
+
+    /**
+     * current piece being placed
+     */
+    private GamePiece currentPiece;
+
+    /**
+     * piece to be played
+     */
+    private GamePiece followingPiece;
+
+    /**
+     * Create a new endless engine with the specified columns and rows, drawing pieces from the stream with the given
+     * seed.
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed seed of the piece stream
+     */
+    public EndlessEngine(int cols, int rows, long seed) {
+        this.cols = cols;
+        this.rows = rows;
+        this.generator = new PieceGenerator(seed);
+        this.pieces = new PieceQueue(generator);
+        this.grid = new ChunkedGrid(cols, rows);
+    }
+
+    /**
+     * Initialise a new game, picking the first pieces
+     */
+    public void initialiseGame() {
+        currentPiece = spawnPiece();
+        followingPiece = spawnPiece();
+    }
+
+    private GamePiece spawnPiece() {
+        return GamePiece.createPiece(pieces.next());
+    }
+
+    /**
+     * Check whether the current piece can be placed centred on the given column and row
+     *
+     * @param x column
+     * @param y row
+     * @return true if the piece fits
+     */
+    public boolean canPlayPiece(int x, int y) {
+        return grid.canPlayPiece(currentPiece, x, y);
+    }
+
+    /**
+     * Place the current piece centred on the given column and row, clear any full lines and move on to the next piece
+     *
+     * @param x column
+     * @param y row
+     * @return true if the piece was placed, false if it did not fit
+     */
+    public boolean playPiece(int x, int y) {
+        if (!grid.canPlayPiece(currentPiece, x, y)) {
+            return false;
+        }
+        moveLog.place(currentPiece.getPiece(), currentPiece.getRotation(), x, y);
+        grid.playPiece(currentPiece, x, y);
+        piecesPlayed++;
+
+        //only the lines this piece filled are checked, and only the chunks along them are cleared
+        int fullLines = grid.findFullLines();
+        int clearingBlocks = grid.clearFullLines();
+        linesCleared += fullLines;
+        score(fullLines, clearingBlocks);
+
+        currentPiece = followingPiece;
+        followingPiece = spawnPiece();
+        return true;
+    }
+
+    /**
+     * Score a placement, then update the multiplier and level, by the rules of GameEngine
+     *
+     * @param lines  number of lines cleared
+     * @param blocks number of blocks cleared
+     */
+    private void score(int lines, int blocks) {
+        int thisScore = GameEngine.scoreFor(lines, blocks, multiplier);
+        score += thisScore;
+        multiplier = GameEngine.nextMultiplier(multiplier, thisScore);
+        level = GameEngine.levelFor(score);
+    }
+
+    /**
+     * Handle the timer running out before a piece was placed, dealing new pieces in place of both pieces in play
+     */
+    public void timerExpired() {
+        moveLog.timerExpired();
+        currentPiece = spawnPiece();
+        followingPiece = spawnPiece();
+        multiplier = 1;
+    }
+
+    /**
+     * Rotate the current piece
+     *
+     * @param rotations number of rotations
+     */
+    public void rotateCurrentPiece(int rotations) {
+        currentPiece = currentPiece.rotate(rotations);
+    }
+
+    /**
+     * Swap the current and following pieces
+     */
+    public void swapCurrentPiece() {
+        moveLog.swap();
+        GamePiece thisPiece = currentPiece;
+        currentPiece = followingPiece;
+        followingPiece = thisPiece;
+    }
+
+    /**
+     * Get the seed of the piece stream, which with the move log is enough to play this game again
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return generator.getSeed();
+    }
+
+    /**
+     * Get the moves made so far this game
+     *
+     * @return the move log
+     */
+    public EndlessMoveLog getMoveLog() {
+        return moveLog;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    public int getPiecesPlayed() {
+        return piecesPlayed;
+    }
+
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Get the sparse board
+     *
+     * @return the grid
+     */
+    public ChunkedGrid getGrid() {
+        return grid;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
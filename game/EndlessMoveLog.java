@@ -0,0 +1,206 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The EndlessMoveLog records everything a player did in an endless game, one long per move, so that the game can be
+ * simulated again from its seed. It is the MoveLog for boards too large for a MoveLog's 12 bit columns and rows.
+ *
+ * Each move packs its type in the top 2 bits, then the piece number (4 bits), the rotation (2 bits), and the column
+ * and row as signed 28 bit values, so a piece may be centred just outside the board. The move types are those of
+ * MoveLog.
+ */
+public class EndlessMoveLog {
+
+    /**
+     * The smallest and largest column or row a move can hold
+     */
+    public static final int MIN_COORDINATE = -(1 << 27);
+    public static final int MAX_COORDINATE = (1 << 27) - 1;
+
+    /**
+     * The recorded moves
+     */
+    private long[] moves = new long[64];
+
+    /**
+     * The number of moves recorded
+     */
+    private int size = 0;
+
+    /**
+     * Record a piece being placed
+     *
+     * @param piece    piece number
+     * @param rotation rotation of the piece
+     * @param x        column the piece was centred on
+     * @param y        row the piece was centred on
+     */
+    public void place(int piece, int rotation, int x, int y) {
+        add(pack(MoveLog.PLACE, piece, rotation, x, y));
+    }
+
+    /**
+     * Record the current and following pieces being swapped
+     */
+    public void swap() {
+        add(pack(MoveLog.SWAP, 0, 0, 0, 0));
+    }
+
+    /**
+     * Record the timer running out
+     */
+    public void timerExpired() {
+        add(pack(MoveLog.TIMER, 0, 0, 0, 0));
+    }
+
+    /**
+     * Add an already packed move
+     *
+     * @param move the move
+     */
+    public void add(long move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Pack a move into a long
+     *
+     * @param type     move type
+     * @param piece    piece number
+     * @param rotation rotation
+     * @param x        column, from MIN_COORDINATE to MAX_COORDINATE
+     * @param y        row, from MIN_COORDINATE to MAX_COORDINATE
+     * @return the packed move
+     * @throws IllegalArgumentException if the column or row does not fit in 28 bits
+     */
+    public static long pack(int type, int piece, int rotation, int x, int y) {
+        if (x < MIN_COORDINATE || x > MAX_COORDINATE || y < MIN_COORDINATE || y > MAX_COORDINATE) {
+            throw new IllegalArgumentException("Move at " + x + "," + y + " is outside the range an EndlessMoveLog can hold");
+        }
+        return (long) type << 62 | (long) piece << 58 | (long) rotation << 56
+                | (x & 0xFFFFFFFL) << 28 | (y & 0xFFFFFFFL);
+    }
+
+    public static int typeOf(long move) {
+        return (int) (move >>> 62);
+    }
+
+    public static int pieceOf(long move) {
+        return (int) (move >>> 58) & 0xF;
+    }
+
+    public static int rotationOf(long move) {
+        return (int) (move >>> 56) & 0x3;
+    }
+
+    public static int xOf(long move) {
+        return (int) (move << 8 >> 36);
+    }
+
+    public static int yOf(long move) {
+        return (int) (move << 36 >> 36);
+    }
+
+    /**
+     * Get a recorded move
+     *
+     * @param i index, below size()
+     * @return the packed move
+     */
+    public long get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("No such move: " + i);
+        return moves[i];
+    }
+
+    /**
+     * Get the number of moves recorded
+     *
+     * @return number of moves
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every recorded move
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Play the recorded moves on an engine. The engine should be newly initialised from the same seed and board size as
+     * the game that was recorded, and should record into a different log.
+     *
+     * @param engine the engine to play on
+     * @throws IllegalStateException if the log does not match the engine's pieces
+     */
+    public void replay(EndlessEngine engine) {
+        for (var i = 0; i < size; i++) {
+            apply(engine, moves[i], i);
+        }
+    }
+
+    /**
+     * Play a single recorded move on an engine
+     *
+     * @param engine the engine to play on
+     * @param move   the packed move
+     * @param index  the move's position in its log, for error messages
+     * @throws IllegalStateException if the move does not match the engine's pieces
+     */
+    public static void apply(EndlessEngine engine, long move, int index) {
+        switch (typeOf(move)) {
+            case MoveLog.PLACE -> {
+                var current = engine.getCurrentPiece();
+                if (current.getPiece() != pieceOf(move)) {
+                    throw new IllegalStateException("Move " + index + " places piece " + pieceOf(move)
+                            + " but the current piece is " + current.getPiece());
+                }
+                engine.rotateCurrentPiece(rotationOf(move) - current.getRotation());
+                if (!engine.playPiece(xOf(move), yOf(move))) {
+                    throw new IllegalStateException("Move " + index + " does not fit at " + xOf(move) + "," + yOf(move));
+                }
+            }
+            case MoveLog.SWAP -> engine.swapCurrentPiece();
+            case MoveLog.TIMER -> engine.timerExpired();
+            default -> throw new IllegalStateException("Unknown move type at " + index);
+        }
+    }
+
+    /**
+     * Write the log
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (var i = 0; i < size; i++) {
+            out.writeLong(moves[i]);
+        }
+    }
+
+    /**
+     * Read a log written by writeTo
+     *
+     * @param in where to read from
+     * @return the log
+     * @throws IOException if reading fails
+     */
+    public static EndlessMoveLog readFrom(DataInput in) throws IOException {
+        var log = new EndlessMoveLog();
+        var count = in.readInt();
+        for (var i = 0; i < count; i++) {
+            log.add(in.readLong());
+        }
+        return log;
+    }
+}
@@ -1,24 +1,34 @@
 package uk.ac.soton.comp1206.game;
 
 import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.event.*;
+import uk.ac.soton.comp1206.save.Autosave;
 import uk.ac.soton.comp1206.ui.GameWindow;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import uk.ac.soton.comp1206.timer.Timeout;
+import uk.ac.soton.comp1206.timer.TimerWheel;
+import uk.ac.soton.comp1206.util.IntSet;
+
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
  * and to handle actions made by the player should take place inside this class.
+ *
+ * The rules themselves live in a GameEngine, which has no JavaFX dependencies. The Game adapts it for the UI: it runs
+ * the timer, plays sounds and hands the engine's score, lives, multiplier and level to the UI as GameStats.
+ *
+ * The engine is only ever touched by commands sent through the game's Mailbox, whether they come from the JavaFX thread
+ * (batches of clicks, rotations and swaps) or the timer. After each command an immutable GameSnapshot is published
+ * through a volatile reference, and the UI is brought up to date from it on the JavaFX thread: the grid the GameBoard
+ * shows, sounds and listeners. Anything else can read the latest snapshot from any thread without locks.
+ *
+ * However many commands run before the JavaFX thread gets to them, the grid and state listeners are only updated once,
+ * from the latest snapshot, and the statistics listener only when the statistics shown have changed.
+ * Sounds and cleared cells still follow each command.
  */
 public class Game {
 
@@ -34,43 +44,58 @@ public class Game {
      */
     protected final int cols;
     /**
-     * The grid model linked to the game
+     * The engine holding the rules and state of the game
+     */
+    private final GameEngine engine;
+    /**
+     * The grid shown by the UI. It is only changed on the JavaFX thread, copied from each snapshot; the engine's own
+     * grid belongs to the mailbox.
      */
     private final Grid grid;
-    protected ScheduledFuture<?> gameLoop;
     /**
-     * Calls a gameLoop method
+     * Runs every command that touches the engine, one at a time
      */
-    protected ScheduledExecutorService executorService;
+    private final Mailbox mailbox = new Mailbox();
     /**
-     * initialising the lives, score, multiplier and, level simple integer properties
+     * The state after the latest command
      */
-
-    private SimpleIntegerProperty lives = new SimpleIntegerProperty(3);
-    private SimpleIntegerProperty score = new javafx.beans.property.SimpleIntegerProperty(0);
-    private SimpleIntegerProperty multiplier = new SimpleIntegerProperty(1);
-    private SimpleIntegerProperty level = new SimpleIntegerProperty(0);
+    private volatile GameSnapshot snapshot;
     /**
-     * field variable for the line cleared listener
+     * Cells cleared by the command or batch being run, handed to the listener once the UI has caught up
      */
-    private LineClearedListener lineClearedListener = null;
+    private long[] clearedCells = null;
+    private CellsClearedListener cellsClearedListener = null;
+    private GameStateListener gameStateListener = null;
+    private GameStatsListener gameStatsListener = null;
     /**
-     * field variable for the next piece listener
+     * Set while the UI has an update coming that will show the latest snapshot
      */
-    private NextPieceListener nextPieceListener = null;
-    private GameLoopListener gameLoopListener = null;
-
-    private GameOverListener gameOverListener = null;
-    private Random random = new Random();
-    private boolean isGameLoopScheduled = false;
+    private final AtomicBoolean renderPending = new AtomicBoolean();
+    /**
+     * The snapshot and statistics the UI shows. Only used on the JavaFX thread.
+     */
+    private GameSnapshot shown = null;
+    private GameStats shownStats = null;
+    /**
+     * The pending timeout that calls the gameLoop method, on the timer wheel shared by every game
+     */
+    protected volatile Timeout gameLoop;
+    /**
+     * When the pending timeout runs out, as System.nanoTime
+     */
+    private volatile long gameLoopDeadline = 0;
     /**
-     * current piece being placed
+     * Keeps a save file up to date after every command, if set. Only used on the mailbox.
      */
-    private GamePiece currentPiece;
+    private Autosave autosave = null;
     /**
-     * piece to be played
+     * Set once the game has finished or been stopped, so the timer is not scheduled again
      */
-    private GamePiece followingPiece;
+    private volatile boolean stopped = false;
+    private GameLoopListener gameLoopListener = null;
+
+    private GameOverListener gameOverListener = null;
+    private boolean isGameLoopScheduled = false;
 
     //private ScoresScene scoresScene;
     private HighScoreListener highScoreListener;
@@ -83,22 +108,96 @@ public class Game {
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
-        this.cols = cols;
-        this.rows = rows;
+        //Create a new engine, with its grid model to represent the game state
+        this(new GameEngine(cols, rows));
+    }
 
-        //Create a new grid model to represent the game state
+    /**
+     * Create a game around an existing engine, for example one loaded from a save to be resumed
+     *
+     * @param engine the engine, which from now on belongs to the game's mailbox
+     */
+    public Game(GameEngine engine) {
+        this.cols = engine.getCols();
+        this.rows = engine.getRows();
+        this.engine = engine;
         this.grid = new Grid(cols, rows);
-        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        this.snapshot = GameSnapshot.of(engine);
+
+        //the engine reports cleared cells on the mailbox thread, in an array it reuses. A batch of input may clear
+        //lines more than once, so the cells are gathered until the UI is brought up to date.
+        engine.setCellsClearedListener((cells, gridCols) -> {
+            if (clearedCells == null) {
+                clearedCells = cells.clone();
+                return;
+            }
+            for (var i = 0; i < cells.length; i++) {
+                clearedCells[i] |= cells[i];
+            }
+        });
     }
 
     /**
      * Start the game
      */
     public void start() {
-        logger.info("Starting game");
-        initialiseGame();
-        gameLoop = executorService.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-        gameLoopListener();
+        //the seed and the engine's move log are enough to play this game again
+        logger.info("Starting game with seed {}", engine.getSeed());
+        mailbox.execute(() -> {
+            logger.info("Initialising game");
+            engine.initialiseGame();
+            scheduleGameLoop();
+            publish();
+            var cleared = takeClearedCells();
+            Platform.runLater(() -> {
+                showCleared(cleared);
+                gameLoopListener();
+            });
+        });
+    }
+
+    /**
+     * Carry on a game whose engine was loaded from a save, rather than starting a new one
+     *
+     * @param timerRemaining milliseconds left on the timer when the game was saved, or 0 for the full delay
+     */
+    public void resume(int timerRemaining) {
+        logger.info("Resuming game with seed {}", engine.getSeed());
+        mailbox.execute(() -> {
+            var delay = timerRemaining > 0 ? timerRemaining : engine.getTimerDelay();
+            scheduleGameLoop(delay);
+            publish();
+            Platform.runLater(() -> {
+                if (gameLoopListener != null) {
+                    gameLoopListener.gameLoop(delay);
+                }
+            });
+        });
+    }
+
+    /**
+     * sets the autosave kept up to date after every command
+     * @param autosave - the autosave, or null for none
+     */
+    public void setAutosave(Autosave autosave) {
+        mailbox.execute(() -> this.autosave = autosave);
+    }
+
+    /**
+     * stops the game and saves it with the time left on the timer, so it can be resumed later
+     */
+    public void suspend() {
+        mailbox.execute(() -> {
+            var remaining = getTimerRemaining();
+            stopGame();
+            if (autosave != null) {
+                if (!engine.isGameOver()) {
+                    autosave.suspend(engine, remaining);
+                }
+                autosave.close();
+                autosave = null;
+            }
+        });
     }
 
     /**
@@ -106,17 +205,40 @@ public class Game {
      * @param listener - the listeners
      */
     public void setLineClearedListener(LineClearedListener listener) {
-        lineClearedListener = listener;
+        mailbox.execute(() -> engine.setLineClearedListener(listener == null ? null
+                : coordinates -> Platform.runLater(() -> listener.lineCleared(coordinates))));
+    }
+
+    /**
+     * method to set the listener given the cleared cells as a bitset
+     * @param listener - the listener
+     */
+    public void setCellsClearedListener(CellsClearedListener listener) {
+        cellsClearedListener = listener;
+    }
+
+    /**
+     * sets the listener called on the JavaFX thread with the new state after every command
+     * @param listener - the listener
+     */
+    public void setGameStateListener(GameStateListener listener) {
+        gameStateListener = listener;
+    }
+
+    /**
+     * sets the listener called on the JavaFX thread with the statistics whenever they change
+     * @param listener - the listener
+     */
+    public void setGameStatsListener(GameStatsListener listener) {
+        gameStatsListener = listener;
     }
 
     /**
      * method which notifies the listener when a line has been cleared
-     * @param coordinates - of the blocks cleared
+     * @param coordinates - of the blocks cleared, packed as by Coordinates
      */
-    public void lineCleared(HashSet<GameBlockCoordinate> coordinates) {
-        if (lineClearedListener != null) {
-            lineClearedListener.lineCleared(coordinates);
-        }
+    public void lineCleared(IntSet coordinates) {
+        mailbox.execute(() -> engine.lineCleared(coordinates));
     }
 
     /**
@@ -155,11 +277,36 @@ public class Game {
     }
 
     /**
-     * sets the next piece listener for the game - notified when new piece is available
+     * sets the next piece listener for the game - notified on the JavaFX thread when new piece is available
      * @param nextListener
      */
     public void setNextPiece(NextPieceListener nextListener) {
-        nextPieceListener = nextListener;
+        mailbox.execute(() -> engine.setNextPieceListener(nextListener == null ? null
+                : (current, following) -> Platform.runLater(() -> nextListener.nextPiece(current, following))));
+    }
+
+    /**
+     * sets the listener given the preview window on the JavaFX thread whenever the pieces in play change
+     * @param listener - the listener
+     */
+    public void setPiecePreviewListener(PiecePreviewListener listener) {
+        mailbox.execute(() -> engine.setPiecePreviewListener(listener == null ? null
+                : pieces -> {
+                    var window = pieces.clone();
+                    Platform.runLater(() -> listener.piecesPreviewed(window));
+                }));
+    }
+
+    /**
+     * sets how many pieces after the following piece are previewed, and whether pieces are dealt from bags
+     * @param depth - number of pieces previewed
+     * @param bag - true to deal from bags
+     */
+    public void setPieceQueue(int depth, boolean bag) {
+        mailbox.execute(() -> {
+            engine.setPreviewDepth(depth);
+            engine.setBagMode(bag);
+        });
     }
 
     public void setHighScoreListener(HighScoreListener listener){highScoreListener = listener;}
@@ -175,30 +322,20 @@ public class Game {
      * Initialise a new game and set up anything that needs to be done at the start
      */
     public void initialiseGame() {
-        logger.info("Initialising game");
-        currentPiece = spawnPiece();
-        logger.info("creating current piece");
-        followingPiece = spawnPiece();
-        logger.info("creating following piece");
-        nextPiece();
+        command(() -> {
+            logger.info("Initialising game");
+            engine.initialiseGame();
+        });
     }
 
     public void nextPiece() {
-        logger.info("The next piece is: {}", currentPiece);
-        currentPiece = followingPiece;
-        followingPiece = spawnPiece();
-        if (nextPieceListener != null) {
-            nextPieceListener.nextPiece(currentPiece, followingPiece);
-        }
+        command(engine::nextPiece);
     }
 
 
     public GamePiece spawnPiece() {
-        var maxPieces = GamePiece.PIECES;
-        var randomPiece = random.nextInt(maxPieces);
-        logger.info("picking random piece: {}", randomPiece);
-        var piece = GamePiece.createPiece(randomPiece);
-        return piece;
+        if (mailbox.isOwnerThread()) return engine.spawnPiece();
+        return mailbox.submit(engine::spawnPiece).join();
     }
 
     /**
@@ -208,83 +345,95 @@ public class Game {
      */
     public void blockClicked(GameBlock gameBlock) {
         //Get the position of this block
-        int x = gameBlock.getX();
-        int y = gameBlock.getY();
-
-        if (grid.canPlayPiece(currentPiece, x, y)) {
-            //place piece
-            grid.playPiece(currentPiece, x, y);
-            afterPiece();
-            nextPiece();
-            gameLoop.cancel(false);
-            scheduleGameLoop();
-            gameLoopListener();
-            MultiMedia.playAudio("place.wav");
-        } else {
-            //cannot place piece
-            MultiMedia.playAudio("fail.wav");
-        }
+        var commands = new CommandQueue();
+        commands.place(gameBlock.getX(), gameBlock.getY());
+        apply(commands.drain());
     }
 
     /**
-     * method to clear lines after a block has been placed
+     * Apply a batch of input drained from a CommandQueue as a single command, so however many the batch holds the UI
+     * is brought up to date, and each sound played, only once
+     *
+     * @param batch the commands, or null if there were none
      */
-    public void afterPiece() {
-        //HashSet<SimpleIntegerProperty> clearingBlocks = new HashSet<>(); // Hashset of game blocks to be cleared
-        HashSet<GameBlockCoordinate> blocksCleared = new HashSet<>(); //hashset of game block coordinates (as shown in the UI) so that they are not counted twice
-        //counts number of full lines and blocks
-        int fullLines = 0;
-        int clearingBlocks = 0;
-        //checks each row and whether the row is full
-        for (int y = 0; y < rows; y++) {
-            boolean isRowFull = true;
-            for (int x = 0; x < cols; x++) {
-                logger.info("checking if row is full..");
-                //if at any point the iterator reaches a point where the array is zero, the loop breaks
-                if (grid.get(x, y) == 0) {
-                    logger.info("row is not full");
-                    isRowFull = false;
-                    break;
+    public void apply(int[] batch) {
+        if (batch == null) return;
+        mailbox.execute(() -> applyBatch(batch));
+    }
+
+    /**
+     * Apply a batch of input. Runs on the mailbox.
+     *
+     * @param batch the commands
+     */
+    private void applyBatch(int[] batch) {
+        boolean turned = false;
+        boolean failed = false;
+        boolean placed = false;
+        boolean lifeLost = false;
+        for (int command : batch) {
+            switch (CommandQueue.typeOf(command)) {
+                case CommandQueue.ROTATE -> {
+                    engine.rotateCurrentPiece(CommandQueue.turnsOf(command));
+                    turned = true;
                 }
-            }
-            //if row is full, coordinates are added to the hashset.
-            if (isRowFull) {
-                logger.info("row is full");
-                fullLines++;
-                for (int x = 0; x < cols; x++) {
-                    blocksCleared.add(new GameBlockCoordinate(x, y));
+                case CommandQueue.SWAP -> {
+                    engine.swapCurrentPiece();
+                    turned = true;
+                }
+                default -> {
+                    int livesBefore = engine.getLives();
+                    if (!engine.playPiece(CommandQueue.xOf(command), CommandQueue.yOf(command))) {
+                        //cannot place piece
+                        failed = true;
+                        continue;
+                    }
+                    //piece placed, lines cleared and scored by the engine
+                    if (engine.isGameOver()) {
+                        //no piece could be played and there were no lives left
+                        finishGame("level.wav");
+                        return;
+                    }
+                    //neither new piece fitted anywhere, so a life was lost without waiting for the timer
+                    lifeLost |= engine.getLives() < livesBefore;
+                    placed = true;
                 }
             }
         }
-
-        for (int x = 0; x < cols; x++) {
-            boolean isColumnFull = true;
-            logger.info("checking if column is full");
-            for (int y = 0; y < rows; y++) {
-                if (grid.get(x, y) == 0) {
-                    logger.info("column is not full");
-                    isColumnFull = false;
-                    break;
-                }
+        if (placed) {
+            gameLoop.cancel();
+            scheduleGameLoop();
+        }
+        publish();
+        var cleared = takeClearedCells();
+        boolean rotateSound = turned;
+        boolean failSound = failed;
+        boolean placeSound = placed;
+        boolean lifeLostSound = lifeLost;
+        Platform.runLater(() -> {
+            showCleared(cleared);
+            if (rotateSound) {
+                MultiMedia.playAudio("rotate.wav");
+            }
+            if (failSound) {
+                MultiMedia.playAudio("fail.wav");
             }
-            if (isColumnFull) {
-                logger.info("column is full");
-                fullLines++;
-                for (int y = 0; y < rows; y++) {
-                    blocksCleared.add(new GameBlockCoordinate(x, y));
+            if (placeSound) {
+                MultiMedia.playAudio("level.wav");
+                if (lifeLostSound) {
+                    MultiMedia.playAudio("lifelose.wav");
                 }
+                gameLoopListener();
+                MultiMedia.playAudio("place.wav");
             }
-        }
-
-        // Clears the blocks
-        for (GameBlockCoordinate coordinate : blocksCleared) {
-            clearingBlocks++;
-            logger.info("clearing blocks...");
-            grid.set(coordinate.getX(), coordinate.getY(), 0);
-        }
-        score(fullLines, clearingBlocks);
+        });
+    }
 
-        lineCleared(blocksCleared);
+    /**
+     * method to clear lines after a block has been placed
+     */
+    public void afterPiece() {
+        command(engine::afterPiece, "level.wav");
     }
 
     /**
@@ -295,20 +444,7 @@ public class Game {
      */
 
     public void score(int lines, int blocks) {
-        int thisScore = (lines * blocks * 10 * multiplier.get());
-        //method to update the total score
-        logger.info("increasing score...");
-        increaseScore(thisScore);
-
-        //calculates the multiplier
-        if (thisScore > 0) {
-            multiplier.set(multiplier.get() + 1);
-        } else {
-            multiplier.set(1);
-        }
-        //calculates the level
-        level.set(score.get() / 1000);
-        MultiMedia.playAudio("level.wav");
+        command(() -> engine.score(lines, blocks), "level.wav");
     }
 
 
@@ -318,11 +454,11 @@ public class Game {
      * @return
      */
     public int getScore() {
-        return score.get();
+        return snapshot.getScore();
     }
 
     public int getLevel() {
-        return level.get();
+        return snapshot.getLevel();
     }
 
 
@@ -332,11 +468,11 @@ public class Game {
      * @param scoreIncrease - increase score by this
      */
     public void increaseScore(int scoreIncrease) {
-        score.set(score.add(scoreIncrease).get());
+        command(() -> engine.increaseScore(scoreIncrease));
     }
 
     public int getLives() {
-        return lives.get();
+        return snapshot.getLives();
     }
 
     /**
@@ -345,39 +481,135 @@ public class Game {
      * @param rotations - number of rotations
      */
     public void rotateCurrentPiece(int rotations) {
-        currentPiece.rotate(rotations);
+        command(() -> engine.rotateCurrentPiece(rotations));
     }
 
     public void swapCurrentPiece() {
         logger.info("swapping current and following pieces...");
-        GamePiece thisPiece = currentPiece;
-        currentPiece = followingPiece;
-        followingPiece = thisPiece;
+        command(engine::swapCurrentPiece);
     }
 
     /**
-     * method to get the scoreProperty so that it can be used in the UI for binding purposes.
+     * Send a command that changes the engine, then bring the UI up to date
      *
-     * @return
+     * @param change the change to make to the engine
+     * @param sounds sounds to play once the UI is up to date
      */
-    public IntegerProperty scoreProperty() {
-        return score;
+    private void command(Runnable change, String... sounds) {
+        mailbox.execute(() -> {
+            change.run();
+            publish();
+            var cleared = takeClearedCells();
+            Platform.runLater(() -> {
+                showCleared(cleared);
+                for (String sound : sounds) {
+                    MultiMedia.playAudio(sound);
+                }
+            });
+        });
+    }
+
+    /**
+     * Take and publish a snapshot of the engine, and have the UI show it unless an update is already coming. Runs on
+     * the mailbox.
+     */
+    private void publish() {
+        var state = GameSnapshot.of(engine);
+        snapshot = state;
+        if (renderPending.compareAndSet(false, true)) {
+            Platform.runLater(this::render);
+        }
+        //a finished game is not saved to be resumed
+        if (autosave != null) {
+            if (state.isGameOver()) {
+                autosave.discard();
+                autosave.close();
+                autosave = null;
+            } else {
+                autosave.record(engine, getTimerRemaining());
+            }
+        }
     }
 
-    public IntegerProperty levelProperty() {
-        return level;
+    /**
+     * copies the latest snapshot into the grid bound by the UI, then tells the listeners. Runs on the JavaFX thread,
+     * once for however many snapshots were published since it last ran.
+     */
+    private void render() {
+        renderPending.set(false);
+        var state = snapshot;
+        if (state == shown) return;
+        shown = state;
+
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                grid.set(x, y, state.get(x, y));
+            }
+        }
+        var stats = state.getStats();
+        if (gameStatsListener != null && !stats.equals(shownStats)) {
+            gameStatsListener.gameStats(stats);
+        }
+        shownStats = stats;
+        if (gameStateListener != null) {
+            gameStateListener.gameState(state);
+        }
+    }
+
+    /**
+     * Hand the cells cleared by a command to the listener. Runs on the JavaFX thread, after the grid has been updated,
+     * as the render for the command is always queued before the command's own update.
+     *
+     * @param cleared the cells cleared by the command, or null if none
+     */
+    private void showCleared(long[] cleared) {
+        //the cells only fade out once the grid shows them cleared
+        if (cleared != null && cellsClearedListener != null) {
+            cellsClearedListener.cellsCleared(cleared, cols);
+        }
+    }
+
+    /**
+     * Take the cells cleared by the command being run. Runs on the mailbox.
+     *
+     * @return the cells, or null if none were cleared
+     */
+    private long[] takeClearedCells() {
+        var cleared = clearedCells;
+        clearedCells = null;
+        return cleared;
+    }
+
+    /**
+     * Get the state after the latest command. Safe to call from any thread.
+     *
+     * @return the snapshot
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
     }
 
-    public IntegerProperty livesProperty() {
-        return lives;
+    /**
+     * Get the engine holding the rules and state of this game. It belongs to the game's mailbox, so it should only be
+     * used from commands sent through getMailbox; other threads should read getSnapshot.
+     *
+     * @return game engine
+     */
+    public GameEngine getEngine() {
+        return engine;
     }
 
-    public IntegerProperty getMultiplierProperty() {
-        return multiplier;
+    /**
+     * Get the mailbox that runs every command touching the engine
+     *
+     * @return the mailbox
+     */
+    public Mailbox getMailbox() {
+        return mailbox;
     }
 
     /**
-     * Get the grid model inside this game representing the game state of the board
+     * Get the grid shown by the UI, which follows the game state on the JavaFX thread
      *
      * @return game grid model
      */
@@ -410,7 +642,7 @@ public class Game {
      */
 
     public GamePiece getFollowingPiece() {
-        return followingPiece;
+        return snapshot.getFollowingPiece();
     }
 
     /**
@@ -419,48 +651,99 @@ public class Game {
      * @returns current piece
      */
     public GamePiece getCurrentPiece() {
-        return currentPiece;
+        return snapshot.getCurrentPiece();
     }
 
     public int getTimerDelay() {
-        return Math.max(2500, (12000-(500 * getLevel())));
+        return snapshot.getTimerDelay();
     }
+
+    /**
+     * Schedule the timer. Runs on the mailbox.
+     */
     private void scheduleGameLoop() {
+        scheduleGameLoop(engine.getTimerDelay());
+    }
+
+    /**
+     * Schedule the timer to run out after the given delay. Runs on the mailbox.
+     *
+     * @param delay milliseconds
+     */
+    private void scheduleGameLoop(int delay) {
+        if (stopped) return;
         if (!isGameLoopScheduled) {
             isGameLoopScheduled = true;
         }
-        gameLoop = executorService.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
+        gameLoopDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        var timeout = new Timeout[1];
+        timeout[0] = TimerWheel.shared().schedule(() -> mailbox.execute(() -> gameLoop(timeout[0])), delay,
+                TimeUnit.MILLISECONDS);
+        gameLoop = timeout[0];
     }
 
-    public void gameLoop() {
-        if (getLives() > 0) {
-        Platform.runLater(() -> {
-                lives.set(lives.get() - 1);
-                MultiMedia.playAudio("lifelose.wav");
-                // Ensure you only update UI components or properties from the FX thread.
-                randomPiece();
-                multiplier.set(1);
-                gameLoopListener();
-            });
-                isGameLoopScheduled = false;
-                scheduleGameLoop();
-            } else {
-            Platform.runLater(() -> {
-                gameLoop.cancel(false); // Attempt to cancel the current scheduled task
-                executorService.shutdown(); // Shutdown the executor service
-                gameOverListener();
-            });
+    /**
+     * Get how long is left before the timer runs out
+     *
+     * @return milliseconds, at least 1, or 0 if the timer is not running
+     */
+    public int getTimerRemaining() {
+        var timeout = gameLoop;
+        if (timeout == null || stopped) return 0;
+        var remaining = TimeUnit.NANOSECONDS.toMillis(gameLoopDeadline - System.nanoTime());
+        return (int) Math.max(1, remaining);
+    }
+
+    /**
+     * The timer ran out. Runs on the mailbox.
+     *
+     * @param expired the timeout that ran out, ignored if a placement has since cancelled and replaced it
+     */
+    private void gameLoop(Timeout expired) {
+        if (stopped || expired != gameLoop) return;
+        if (!engine.timerExpired()) {
+            //no lives were left, or the new pieces did not fit and the remaining lives ran out
+            finishGame();
+            return;
         }
+        isGameLoopScheduled = false;
+        scheduleGameLoop();
+        publish();
+        var cleared = takeClearedCells();
+        Platform.runLater(() -> {
+            showCleared(cleared);
+            MultiMedia.playAudio("lifelose.wav");
+            gameLoopListener();
+        });
     }
-    private void randomPiece(){
-        currentPiece = spawnPiece();
-        followingPiece = spawnPiece();
-        nextPieceListener.nextPiece(currentPiece,followingPiece);
+
+    /**
+     * stops the timer and tells the listener the game is over. Runs on the mailbox.
+     *
+     * @param sounds sounds to play once the UI is up to date
+     */
+    private void finishGame(String... sounds) {
+        stopGame();
+        publish();
+        var cleared = takeClearedCells();
+        Platform.runLater(() -> {
+            showCleared(cleared);
+            for (String sound : sounds) {
+                MultiMedia.playAudio(sound);
+            }
+            gameOverListener();
+        });
     }
+
+    /**
+     * stops the timer, leaving the shared timer wheel running for other games
+     */
     public void stopGame(){
-        executorService.shutdownNow();
+        stopped = true;
+        var timeout = gameLoop;
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 
 }
-
-
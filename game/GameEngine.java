@@ -0,0 +1,716 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.component.Coordinates;
+import uk.ac.soton.comp1206.event.CellsClearedListener;
+import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.event.PiecePreviewListener;
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.journal.JournalCategory;
+import uk.ac.soton.comp1206.util.IntSet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The GameEngine holds the rules and state of a TetrECS game with no dependency on JavaFX, audio or timers: placing
+ * pieces, clearing lines, scoring, the multiplier, levels and lives.
+ *
+ * It is driven entirely by method calls, so it can run bots and simulations without a display. The Game class adapts
+ * it for the UI, adding the timer, sounds and observable properties.
+ *
+ * Pieces come from a seeded PieceGenerator and every move is recorded in a MoveLog, so any game can be played again
+ * exactly from its seed and log.
+ */
+public class GameEngine {
+
+    /**
+     * Number of columns
+     */
+    private final int cols;
+
+    /**
+     * Number of rows
+     */
+    private final int rows;
+
+    /**
+     * The grid model linked to the game
+     */
+    private final Grid grid;
+
+    /**
+     * Points for each block cleared, for each line cleared, and the score needed for each level
+     */
+    public static final int SCORE_PER_BLOCK = 10;
+    public static final int SCORE_PER_LEVEL = 1000;
+
+    /**
+     * Every placement of every piece on this size of board, used to spot when no piece can be played
+     */
+    private final PlacementTable placements;
+
+    /**
+     * Source of the random pieces
+     */
+    private final PieceGenerator generator;
+
+    /**
+     * Deals the pieces from the generator, keeping the preview window filled
+     */
+    private final PieceQueue pieces;
+
+    /**
+     * The moves made so far this game
+     */
+    private final MoveLog moveLog = new MoveLog();
+
+    /**
+     * lives, score, multiplier and level
+     */
+    private int lives = 3;
+    private int score = 0;
+    private int multiplier = 1;
+    private int level = 0;
+
+    /**
+     * Whether the timer has run out with no lives left
+     */
+    private boolean gameOver = false;
+
+    /**
+     * Running totals for this engine: pieces placed, lines cleared and the highest multiplier reached
+     */
+    private int piecesPlayed = 0;
+    private int linesCleared = 0;
+    private int peakMultiplier = 1;
+
+    /**
+     * The state last taken by getState or given to setState, whose rows the next state shares where they match
+     */
+    private GameState lastState = null;
+
+    /**
+     * current piece being placed
+     */
+    private GamePiece currentPiece;
+
+    /**
+     * piece to be played
+     */
+    private GamePiece followingPiece;
+
+    /**
+     * Listeners notified when lines are cleared and when the pieces change
+     */
+    private LineClearedListener lineClearedListener = null;
+    private CellsClearedListener cellsClearedListener = null;
+    private NextPieceListener nextPieceListener = null;
+    private PiecePreviewListener piecePreviewListener = null;
+
+    /**
+     * The preview window handed to the listener, reused each time
+     */
+    private GamePiece[] preview = new GamePiece[0];
+
+    /**
+     * Create a new game engine with the specified columns and rows. Creates a corresponding grid model.
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public GameEngine(int cols, int rows) {
+        this(cols, rows, PieceGenerator.randomSeed());
+    }
+
+    /**
+     * Create a new game engine with the specified columns and rows, drawing pieces from the stream with the given seed.
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed seed of the piece stream
+     */
+    public GameEngine(int cols, int rows, long seed) {
+        this(cols, rows, new PieceGenerator(seed));
+    }
+
+    /**
+     * Create a new game engine with the specified columns and rows, drawing pieces from the given generator.
+     *
+     * @param cols      number of columns
+     * @param rows      number of rows
+     * @param generator source of the random pieces
+     */
+    public GameEngine(int cols, int rows, PieceGenerator generator) {
+        this.cols = cols;
+        this.rows = rows;
+        this.generator = generator;
+        this.pieces = new PieceQueue(generator);
+
+        //Create a new grid model to represent the game state
+        this.grid = new Grid(cols, rows);
+        this.placements = PlacementTable.forSize(cols, rows);
+    }
+
+    /**
+     * Set the listener notified with the coordinates of the blocks cleared after each placement
+     *
+     * @param listener the listener
+     */
+    public void setLineClearedListener(LineClearedListener listener) {
+        lineClearedListener = listener;
+    }
+
+    /**
+     * Set the listener notified with the cells cleared after each placement, as a bitset. Unlike a LineClearedListener
+     * this allocates nothing.
+     *
+     * @param listener the listener
+     */
+    public void setCellsClearedListener(CellsClearedListener listener) {
+        cellsClearedListener = listener;
+    }
+
+    /**
+     * Set the listener notified when the current and following pieces change
+     *
+     * @param listener the listener
+     */
+    public void setNextPieceListener(NextPieceListener listener) {
+        nextPieceListener = listener;
+    }
+
+    /**
+     * Set the listener given the preview window whenever the pieces in play change
+     *
+     * @param listener the listener
+     */
+    public void setPiecePreviewListener(PiecePreviewListener listener) {
+        piecePreviewListener = listener;
+    }
+
+    /**
+     * Set how many pieces after the following piece are previewed
+     *
+     * @param depth number of pieces, from 0 to PieceQueue.MAX_DEPTH
+     */
+    public void setPreviewDepth(int depth) {
+        pieces.setDepth(depth);
+        preview = new GamePiece[depth];
+    }
+
+    /**
+     * Choose between independently random pieces and pieces dealt from bags holding every piece once
+     *
+     * @param bag true to deal from bags
+     */
+    public void setBagMode(boolean bag) {
+        pieces.setBag(bag);
+    }
+
+    public boolean isBagMode() {
+        return pieces.isBag();
+    }
+
+    /**
+     * Initialise a new game, picking the first pieces
+     */
+    public void initialiseGame() {
+        currentPiece = spawnPiece();
+        followingPiece = spawnPiece();
+        nextPiece();
+        skipStuckPieces();
+    }
+
+    /**
+     * Move the following piece into play and pick a new following piece
+     */
+    public void nextPiece() {
+        currentPiece = followingPiece;
+        followingPiece = spawnPiece();
+        notifyNextPiece();
+    }
+
+    /**
+     * Pick a random piece
+     *
+     * @return the piece
+     */
+    public GamePiece spawnPiece() {
+        return GamePiece.createPiece(pieces.next());
+    }
+
+    /**
+     * Check whether the current piece can be placed centred on the given column and row
+     *
+     * @param x column
+     * @param y row
+     * @return true if the piece fits
+     */
+    public boolean canPlayPiece(int x, int y) {
+        return grid.canPlayPiece(currentPiece, x, y);
+    }
+
+    /**
+     * Place the current piece centred on the given column and row, clear any full lines and move on to the next piece
+     *
+     * @param x column
+     * @param y row
+     * @return true if the piece was placed, false if it did not fit
+     */
+    public boolean playPiece(int x, int y) {
+        if (!grid.canPlayPiece(currentPiece, x, y)) {
+            return false;
+        }
+        moveLog.place(currentPiece.getPiece(), currentPiece.getRotation(), x, y);
+        grid.playPiece(currentPiece, x, y);
+        piecesPlayed++;
+        afterPiece();
+        nextPiece();
+        skipStuckPieces();
+        return true;
+    }
+
+    /**
+     * Clear any full rows and columns after a block has been placed, and score them
+     */
+    public void afterPiece() {
+        int fullLines = grid.findFullLines();
+        //coordinates are only built when someone is listening for them
+        IntSet blocksCleared = lineClearedListener != null ? new IntSet() : null;
+        if (fullLines > 0 && blocksCleared != null) {
+            //turns the bits of the cleared cells back into packed coordinates for the UI
+            long[] cells = grid.getFullLineCells();
+            for (int word = 0; word < cells.length; word++) {
+                long bits = cells[word];
+                while (bits != 0) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    blocksCleared.add(Coordinates.ofIndex(index, cols));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        int clearingBlocks = grid.clearFullLines();
+        if (fullLines > 0) {
+            EventJournal.global().record(JournalCategory.LINE_CLEAR, fullLines, clearingBlocks);
+        }
+        linesCleared += fullLines;
+        score(fullLines, clearingBlocks);
+
+        if (fullLines > 0 && cellsClearedListener != null) {
+            cellsClearedListener.cellsCleared(grid.getFullLineCells(), cols);
+        }
+        if (blocksCleared != null) {
+            lineCleared(blocksCleared);
+        }
+    }
+
+    /**
+     * Notify the listener that lines have been cleared
+     *
+     * @param coordinates of the blocks cleared, packed as by Coordinates
+     */
+    public void lineCleared(IntSet coordinates) {
+        if (lineClearedListener != null) {
+            lineClearedListener.lineCleared(coordinates);
+        }
+    }
+
+    /**
+     * Score a placement, then update the multiplier and level
+     *
+     * @param lines  number of lines cleared
+     * @param blocks number of blocks cleared
+     */
+    public void score(int lines, int blocks) {
+        int thisScore = scoreFor(lines, blocks, multiplier);
+        increaseScore(thisScore);
+        multiplier = nextMultiplier(multiplier, thisScore);
+        peakMultiplier = Math.max(peakMultiplier, multiplier);
+        level = levelFor(score);
+    }
+
+    /**
+     * Get the score for a placement. Every mode scores through this, and the BoardBatch kernels follow it.
+     *
+     * @param lines      number of lines cleared
+     * @param blocks     number of blocks cleared
+     * @param multiplier multiplier before the placement
+     * @return the score for the placement
+     */
+    public static int scoreFor(int lines, int blocks, int multiplier) {
+        return lines * blocks * SCORE_PER_BLOCK * multiplier;
+    }
+
+    /**
+     * Get the multiplier after a placement: it grows with each placement that clears lines, and resets on one that
+     * does not
+     *
+     * @param multiplier multiplier before the placement
+     * @param thisScore  score for the placement
+     * @return the new multiplier
+     */
+    public static int nextMultiplier(int multiplier, int thisScore) {
+        return thisScore > 0 ? multiplier + 1 : 1;
+    }
+
+    /**
+     * Get the level for a total score
+     *
+     * @param score total score
+     * @return the level
+     */
+    public static int levelFor(int score) {
+        return score / SCORE_PER_LEVEL;
+    }
+
+    /**
+     * Increase the total score
+     *
+     * @param scoreIncrease increase score by this
+     */
+    public void increaseScore(int scoreIncrease) {
+        score += scoreIncrease;
+    }
+
+    /**
+     * Handle the timer running out before a piece was placed. Loses a life and deals new pieces, or ends the game if
+     * there are no lives left.
+     *
+     * @return true if the game carries on, false if it is over
+     */
+    public boolean timerExpired() {
+        moveLog.timerExpired();
+        loseLife(false);
+        skipStuckPieces();
+        return !gameOver;
+    }
+
+    /**
+     * Check whether either the current or the following piece fits anywhere on the board in any rotation. Swapping is
+     * always allowed, so if neither fits the player has no move left.
+     *
+     * @return true if there is a legal move
+     */
+    public boolean hasLegalMove() {
+        return placements.fitsAnywhere(grid, currentPiece.getPiece())
+                || placements.fitsAnywhere(grid, followingPiece.getPiece());
+    }
+
+    /**
+     * Lose a life and deal new pieces, or end the game if there are no lives left
+     *
+     * @param stuck true if the life was lost because no piece could be played, false if the timer ran out
+     */
+    private void loseLife(boolean stuck) {
+        EventJournal.global().record(JournalCategory.LIFE, lives - 1, stuck ? 1 : 0);
+        if (lives > 0) {
+            lives--;
+            currentPiece = spawnPiece();
+            followingPiece = spawnPiece();
+            multiplier = 1;
+            notifyNextPiece();
+        } else {
+            gameOver = true;
+        }
+    }
+
+    /**
+     * If neither piece can be played, lose a life straight away rather than waiting for the timer, until a piece fits
+     * or the game is over
+     */
+    private void skipStuckPieces() {
+        while (!gameOver && !hasLegalMove()) {
+            loseLife(true);
+        }
+    }
+
+    /**
+     * Rotate the current piece
+     *
+     * @param rotations number of rotations
+     */
+    public void rotateCurrentPiece(int rotations) {
+        currentPiece = currentPiece.rotate(rotations);
+    }
+
+    /**
+     * Swap the current and following pieces
+     */
+    public void swapCurrentPiece() {
+        moveLog.swap();
+        GamePiece thisPiece = currentPiece;
+        currentPiece = followingPiece;
+        followingPiece = thisPiece;
+    }
+
+    /**
+     * Get how long the player has to place the current piece at the current level
+     *
+     * @return delay in milliseconds
+     */
+    public int getTimerDelay() {
+        return Math.max(2500, (12000 - (500 * level)));
+    }
+
+    private void notifyNextPiece() {
+        if (nextPieceListener != null) {
+            nextPieceListener.nextPiece(currentPiece, followingPiece);
+        }
+        if (piecePreviewListener != null && preview.length > 0) {
+            piecePreviewListener.piecesPreviewed(getPreview());
+        }
+    }
+
+    /**
+     * Get the pieces coming after the following piece, the soonest first
+     *
+     * @return the preview window, which is reused by the next call
+     */
+    public GamePiece[] getPreview() {
+        for (var i = 0; i < preview.length; i++) {
+            preview[i] = GamePiece.createPiece(pieces.peek(i));
+        }
+        return preview;
+    }
+
+    /**
+     * Get the number of bytes writeState uses for this size of board
+     *
+     * @return size of the state in bytes
+     */
+    public int getStateSize() {
+        return 8 + (cols * rows + 1) / 2 + 4 + 17 + 8;
+    }
+
+    /**
+     * Write the full state of the game: the board, the pieces in play, the score, multiplier, level and lives, and the
+     * position in the piece stream. The move log is not included.
+     *
+     * Cells are packed two to a byte, as values never exceed 15.
+     *
+     * @param buffer where to write, with at least getStateSize() bytes remaining
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(cols);
+        buffer.putInt(rows);
+        var cells = cols * rows;
+        for (var index = 0; index < cells; index += 2) {
+            var low = grid.get(index % cols, index / cols);
+            var high = index + 1 < cells ? grid.get((index + 1) % cols, (index + 1) / cols) : 0;
+            buffer.put((byte) (high << 4 | low));
+        }
+        buffer.put((byte) currentPiece.getPiece());
+        buffer.put((byte) currentPiece.getRotation());
+        buffer.put((byte) followingPiece.getPiece());
+        buffer.put((byte) followingPiece.getRotation());
+        buffer.putInt(score);
+        buffer.putInt(multiplier);
+        buffer.putInt(level);
+        buffer.putInt(lives);
+        buffer.put((byte) (gameOver ? 1 : 0));
+        buffer.putLong(pieces.getState());
+    }
+
+    /**
+     * Replace the state of the game with one written by writeState, without notifying any listeners
+     *
+     * @param buffer where to read from
+     * @throws IllegalArgumentException if the state is for a different size of board
+     */
+    public void readState(ByteBuffer buffer) {
+        var stateCols = buffer.getInt();
+        var stateRows = buffer.getInt();
+        if (stateCols != cols || stateRows != rows) {
+            throw new IllegalArgumentException("State is for a " + stateCols + "x" + stateRows + " board, not "
+                    + cols + "x" + rows);
+        }
+        grid.clear();
+        var cells = cols * rows;
+        for (var index = 0; index < cells; index += 2) {
+            var packed = buffer.get();
+            grid.set(index % cols, index / cols, packed & 0xF);
+            if (index + 1 < cells) {
+                grid.set((index + 1) % cols, (index + 1) / cols, (packed >> 4) & 0xF);
+            }
+        }
+        currentPiece = GamePiece.createPiece(buffer.get(), buffer.get());
+        followingPiece = GamePiece.createPiece(buffer.get(), buffer.get());
+        score = buffer.getInt();
+        multiplier = buffer.getInt();
+        level = buffer.getInt();
+        lives = buffer.getInt();
+        gameOver = buffer.get() != 0;
+        pieces.setState(buffer.getLong());
+    }
+
+    /**
+     * Take the state of the game as an immutable GameState, which can then be played on, forked or kept for undo
+     * without touching this engine. The move log is not included.
+     *
+     * Rows that have not changed since the last state taken or set are shared with it rather than copied, so a history
+     * of states taken after each move costs only the rows each move changed. Every cell is still read to find them.
+     *
+     * @return the state
+     */
+    public GameState getState() {
+        var board = new byte[rows][];
+        for (var y = 0; y < rows; y++) {
+            var previous = lastState != null ? lastState.row(y) : null;
+            board[y] = previous != null && rowMatches(previous, y) ? previous : copyRow(y);
+        }
+        lastState = new GameState(cols, rows, board, currentPiece, followingPiece, score, multiplier, level, lives,
+                gameOver, piecesPlayed, linesCleared, generator.getSeed(), pieces.isBag(), pieces.getState());
+        return lastState;
+    }
+
+    private boolean rowMatches(byte[] row, int y) {
+        for (var x = 0; x < cols; x++) {
+            if (row[x] != grid.get(x, y)) return false;
+        }
+        return true;
+    }
+
+    private byte[] copyRow(int y) {
+        var row = new byte[cols];
+        for (var x = 0; x < cols; x++) {
+            row[x] = (byte) grid.get(x, y);
+        }
+        return row;
+    }
+
+    /**
+     * Replace the state of the game with a GameState, for example to undo back to an earlier one, without notifying
+     * any listeners. The move log is left as it is.
+     *
+     * @param state the state
+     * @throws IllegalArgumentException if the state is for a different size of board, or deals from bags worked out
+     *                                  from a different seed
+     */
+    public void setState(GameState state) {
+        if (state.getCols() != cols || state.getRows() != rows) {
+            throw new IllegalArgumentException("State is for a " + state.getCols() + "x" + state.getRows()
+                    + " board, not " + cols + "x" + rows);
+        }
+        if (state.isBagMode() && state.getSeed() != generator.getSeed()) {
+            throw new IllegalArgumentException("State deals from the bags of seed " + state.getSeed() + ", not "
+                    + generator.getSeed());
+        }
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                grid.set(x, y, state.get(x, y));
+            }
+        }
+        currentPiece = state.getCurrentPiece();
+        followingPiece = state.getFollowingPiece();
+        score = state.getScore();
+        multiplier = state.getMultiplier();
+        level = state.getLevel();
+        lives = state.getLives();
+        gameOver = state.isGameOver();
+        piecesPlayed = state.getPiecesPlayed();
+        linesCleared = state.getLinesCleared();
+        pieces.setBag(state.isBagMode());
+        pieces.setState(state.getGeneratorState());
+        lastState = state;
+    }
+
+    /**
+     * Get the seed of the piece stream, which with the move log is enough to play this game again
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return generator.getSeed();
+    }
+
+    /**
+     * Get the moves made so far this game
+     *
+     * @return the move log
+     */
+    public MoveLog getMoveLog() {
+        return moveLog;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Get the number of pieces placed by this engine. Like the other totals, this is not part of the saved state.
+     *
+     * @return pieces placed
+     */
+    public int getPiecesPlayed() {
+        return piecesPlayed;
+    }
+
+    /**
+     * Get the number of lines cleared by this engine
+     *
+     * @return lines cleared
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Get the highest multiplier reached by this engine
+     *
+     * @return peak multiplier
+     */
+    public int getPeakMultiplier() {
+        return peakMultiplier;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the table of every placement of every piece on this board
+     *
+     * @return placement table
+     */
+    public PlacementTable getPlacements() {
+        return placements;
+    }
+
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Get the grid model representing the game state of the board
+     *
+     * @return game grid model
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
@@ -5,6 +5,10 @@ package uk.ac.soton.comp1206.game;
  *
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
+ *
+ * Every piece in every rotation is built once, when the class is loaded, into a catalog of immutable pieces. A piece is
+ * therefore just a (piece number, rotation) pair: creating or rotating a piece looks up the catalog and allocates
+ * nothing.
  */
 public class GamePiece {
 
@@ -13,10 +17,51 @@ public class GamePiece {
      */
     public static final int PIECES = 15;
 
+    /**
+     * The number of distinct rotations of each piece
+     */
+    public static final int ROTATIONS = 4;
+
+    /**
+     * Every piece in every rotation, indexed by piece number then rotation
+     */
+    private static final GamePiece[][] CATALOG = new GamePiece[PIECES][ROTATIONS];
+
+    static {
+        for (var piece = 0; piece < PIECES; piece++) {
+            CATALOG[piece][0] = definePiece(piece);
+            for (var rotation = 1; rotation < ROTATIONS; rotation++) {
+                var previous = CATALOG[piece][rotation - 1];
+                CATALOG[piece][rotation] = new GamePiece(piece, rotation, previous.name, rotateBlocks(previous.blocks), previous.value);
+            }
+        }
+    }
+
+    /**
+     * The piece number of this piece
+     */
+    private final int piece;
+
+    /**
+     * The rotation of this piece, from 0 to 3
+     */
+    private final int rotation;
+
     /**
      * The 2D grid representation of the shape of this piece
      */
-    private int[][] blocks;
+    private final int[][] blocks;
+
+    /**
+     * The shape of this piece packed into 9 bits, with the block at x and y held in bit x * 3 + y
+     */
+    private final int mask;
+
+    /**
+     * The offsets of each block of this piece from its centre
+     */
+    private final int[] offsetX;
+    private final int[] offsetY;
 
     /**
      * The value of this piece
@@ -34,95 +79,118 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
+    }
+
+    /**
+     * Create a new GamePiece of the specified piece number and rotation
+     * @param piece piece number
+     * @param rotation number of times to rotate
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece, int rotation) {
+        if (piece < 0 || piece >= PIECES) {
+            //Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return CATALOG[piece][Math.floorMod(rotation, ROTATIONS)];
+    }
+
+    /**
+     * Define the unrotated shape of the specified piece number. Only used to build the catalog.
+     * @param piece piece number
+     * @return the unrotated GamePiece
+     */
+    private static GamePiece definePiece(int piece) {
         switch (piece) {
             //Line
             case 0 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
+                return new GamePiece(piece, 0, "Line", blocks, 1);
             }
 
             //C
             case 1 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
+                return new GamePiece(piece, 0, "C", blocks, 2);
             }
 
             //Plus
             case 2 -> {
                 int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
+                return new GamePiece(piece, 0, "Plus", blocks, 3);
             }
 
             //Dot
             case 3 -> {
                 int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
+                return new GamePiece(piece, 0, "Dot", blocks, 4);
             }
 
             //Square
             case 4 -> {
                 int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
+                return new GamePiece(piece, 0, "Square", blocks, 5);
             }
 
             //L
             case 5 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
+                return new GamePiece(piece, 0, "L", blocks, 6);
             }
 
             //J
             case 6 -> {
                 int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
+                return new GamePiece(piece, 0, "J", blocks, 7);
             }
 
             //S
             case 7 -> {
                 int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
+                return new GamePiece(piece, 0, "S", blocks, 8);
             }
 
             //Z
             case 8 -> {
                 int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
+                return new GamePiece(piece, 0, "Z", blocks, 9);
             }
 
             //T
             case 9 -> {
                 int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
+                return new GamePiece(piece, 0, "T", blocks, 10);
             }
 
             //X
             case 10 -> {
                 int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
+                return new GamePiece(piece, 0, "X", blocks, 11);
             }
 
             //Corner
             case 11 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
+                return new GamePiece(piece, 0, "Corner", blocks, 12);
             }
 
             //Inverse Corner
             case 12 -> {
                 int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
+                return new GamePiece(piece, 0, "Inverse Corner", blocks, 13);
             }
 
             //Diagonal
             case 13 -> {
                 int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
+                return new GamePiece(piece, 0, "Diagonal", blocks, 14);
             }
 
             //Double
             case 14 -> {
                 int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
+                return new GamePiece(piece, 0, "Double", blocks, 15);
             }
         }
 
@@ -130,36 +198,45 @@ public class GamePiece {
         throw new IndexOutOfBoundsException("No such piece: " + piece);
     }
 
-    /**
-     * Create a new GamePiece of the specified piece number and rotation
-     * @param piece piece number
-     * @param rotation number of times to rotate
-     * @return the created GamePiece
-     */
-    public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
-
-        newPiece.rotate(rotation);
-        return newPiece;
-    }
-
     /**
      * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
      * factory.
+     * @param piece piece number
+     * @param rotation rotation of the block makeup
      * @param name name of the piece
      * @param blocks block makeup of the piece
      * @param value the value of this piece
      */
-    private GamePiece(String name, int[][] blocks, int value) {
+    private GamePiece(int piece, int rotation, String name, int[][] blocks, int value) {
+        this.piece = piece;
+        this.rotation = rotation;
         this.name = name;
         this.blocks = blocks;
         this.value = value;
 
         //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
+        var packed = 0;
+        var count = 0;
         for(int x = 0; x < blocks.length; x++) {
             for (int y = 0; y < blocks[x].length; y++) {
                 if(blocks[x][y] == 0) continue;
                 blocks[x][y] = value;
+                packed |= 1 << (x * 3 + y);
+                count++;
+            }
+        }
+        this.mask = packed;
+
+        //Record where each block sits relative to the centre of the piece
+        offsetX = new int[count];
+        offsetY = new int[count];
+        var block = 0;
+        for(int x = 0; x < blocks.length; x++) {
+            for (int y = 0; y < blocks[x].length; y++) {
+                if(blocks[x][y] == 0) continue;
+                offsetX[block] = x - 1;
+                offsetY[block] = y - 1;
+                block++;
             }
         }
     }
@@ -173,27 +250,100 @@ public class GamePiece {
     }
 
     /**
-     * Get the block makeup of this piece
+     * Get the piece number of this piece
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Get the rotation of this piece
+     * @return rotation, from 0 to 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the block makeup of this piece. As pieces are shared, this is a copy.
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
-        return blocks;
+        var copy = new int[blocks.length][];
+        for (var x = 0; x < blocks.length; x++) {
+            copy[x] = blocks[x].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Get the value of a single block of this piece
+     * @param x column, from 0 to 2
+     * @param y row, from 0 to 2
+     * @return the value of the block, or 0 if it is empty
+     */
+    public int getBlock(int x, int y) {
+        return blocks[x][y];
+    }
+
+    /**
+     * Get the shape of this piece packed into 9 bits, with the block at x and y held in bit x * 3 + y
+     * @return the shape mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Get the number of blocks making up this piece
+     * @return number of blocks
+     */
+    public int getBlockCount() {
+        return offsetX.length;
+    }
+
+    /**
+     * Get the column offset of a block from the centre of this piece
+     * @param block index of the block
+     * @return column offset, from -1 to 1
+     */
+    public int getOffsetX(int block) {
+        return offsetX[block];
+    }
+
+    /**
+     * Get the row offset of a block from the centre of this piece
+     * @param block index of the block
+     * @return row offset, from -1 to 1
+     */
+    public int getOffsetY(int block) {
+        return offsetY[block];
     }
 
     /**
-     * Rotate this piece the given number of rotations
+     * Get this piece rotated the given number of rotations
      * @param rotations number of rotations
+     * @return the rotated piece
      */
-    public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+    public GamePiece rotate(int rotations) {
+        return CATALOG[piece][Math.floorMod(rotation + rotations, ROTATIONS)];
+    }
+
+    /**
+     * Get this piece rotated exactly once
+     * @return the rotated piece
+     */
+    public GamePiece rotate() {
+        return rotate(1);
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Rotate a 3x3 block makeup exactly once. Only used to build the catalog.
+     * @param blocks block makeup to rotate
+     * @return the rotated block makeup
      */
-    public void rotate() {
+    private static int[][] rotateBlocks(int[][] blocks) {
         int[][] rotated = new int[blocks.length][blocks[0].length];
         rotated[2][0] = blocks[0][0];
         rotated[1][0] = blocks[0][1];
@@ -207,7 +357,7 @@ public class GamePiece {
         rotated[1][2] = blocks[2][1];
         rotated[0][2] = blocks[2][2];
 
-        blocks = rotated;
+        return rotated;
     }
 
 
@@ -0,0 +1,130 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * An immutable copy of a game's state, taken after each command it applies. Snapshots are published through a
+ * volatile reference, so the UI, networking and bots can read a consistent state from any thread without locks.
+ */
+public final class GameSnapshot {
+
+    private final int cols;
+    private final int rows;
+
+    /**
+     * The value of every cell, at index y * cols + x
+     */
+    private final byte[] cells;
+
+    private final int score;
+    private final int level;
+    private final int lives;
+    private final int multiplier;
+    private final boolean gameOver;
+    private final GamePiece currentPiece;
+    private final GamePiece followingPiece;
+    private final int timerDelay;
+    private final int piecesPlayed;
+    private final int linesCleared;
+    private final GameStats stats;
+
+    private GameSnapshot(GameEngine engine) {
+        cols = engine.getCols();
+        rows = engine.getRows();
+        var grid = engine.getGrid();
+        cells = new byte[cols * rows];
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                cells[y * cols + x] = (byte) grid.get(x, y);
+            }
+        }
+        score = engine.getScore();
+        level = engine.getLevel();
+        lives = engine.getLives();
+        multiplier = engine.getMultiplier();
+        gameOver = engine.isGameOver();
+        currentPiece = engine.getCurrentPiece();
+        followingPiece = engine.getFollowingPiece();
+        timerDelay = engine.getTimerDelay();
+        piecesPlayed = engine.getPiecesPlayed();
+        linesCleared = engine.getLinesCleared();
+        stats = new GameStats(score, level, lives, multiplier, piecesPlayed, linesCleared);
+    }
+
+    /**
+     * Take a snapshot of an engine. Must be called on the thread that owns the engine.
+     *
+     * @param engine the engine
+     * @return the snapshot
+     */
+    public static GameSnapshot of(GameEngine engine) {
+        return new GameSnapshot(engine);
+    }
+
+    /**
+     * Get the value of a cell
+     *
+     * @param x column
+     * @param y row
+     * @return the value, or -1 if the cell is outside the board
+     */
+    public int get(int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return -1;
+        return cells[y * cols + x];
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    public int getTimerDelay() {
+        return timerDelay;
+    }
+
+    public int getPiecesPlayed() {
+        return piecesPlayed;
+    }
+
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Get the statistics shown alongside the game, as one value
+     *
+     * @return the statistics
+     */
+    public GameStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,301 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * An immutable game state: the board, the pieces in play, the score, multiplier, level and lives, and the position in
+ * the piece stream. Moves are made by methods that return a new state and leave this one as it was. Placing a piece
+ * and running out of time are played by a GameEngine set to this state, so a state follows the engine's rules and
+ * deals the same pieces, independently at random or from bags, as the engine it was taken from.
+ *
+ * The board is held as one array per row, and a new state shares every row it did not change with the state it came
+ * from, so a move keeps only the rows it touches plus an array of row references, never a copy of the whole board.
+ * Because nothing ever changes, forking a state for a search, a hint or a replay is just keeping the reference, and a
+ * history of states gives undo and redo at no copying cost.
+ */
+public final class GameState {
+
+    private final int cols;
+    private final int rows;
+
+    /**
+     * The value of each cell, one array per row. Rows are never changed once built, and are shared between states.
+     */
+    private final byte[][] board;
+
+    private final GamePiece currentPiece;
+    private final GamePiece followingPiece;
+    private final int score;
+    private final int multiplier;
+    private final int level;
+    private final int lives;
+    private final boolean gameOver;
+    private final int piecesPlayed;
+    private final int linesCleared;
+
+    /**
+     * The seed of the piece stream, which bags are worked out from, and whether pieces are dealt from bags
+     */
+    private final long seed;
+    private final boolean bag;
+
+    /**
+     * The position in the piece stream, as PieceQueue.getState
+     */
+    private final long generatorState;
+
+    GameState(int cols, int rows, byte[][] board, GamePiece currentPiece, GamePiece followingPiece, int score,
+              int multiplier, int level, int lives, boolean gameOver, int piecesPlayed, int linesCleared,
+              long seed, boolean bag, long generatorState) {
+        this.cols = cols;
+        this.rows = rows;
+        this.board = board;
+        this.currentPiece = currentPiece;
+        this.followingPiece = followingPiece;
+        this.score = score;
+        this.multiplier = multiplier;
+        this.level = level;
+        this.lives = lives;
+        this.gameOver = gameOver;
+        this.piecesPlayed = piecesPlayed;
+        this.linesCleared = linesCleared;
+        this.seed = seed;
+        this.bag = bag;
+        this.generatorState = generatorState;
+    }
+
+    /**
+     * Start a new game on an empty board, dealing the same pieces as a GameEngine with the same seed
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed the seed of the piece stream
+     * @return the state
+     */
+    public static GameState newGame(int cols, int rows, long seed) {
+        return newGame(cols, rows, seed, false);
+    }
+
+    /**
+     * Start a new game on an empty board, dealing the same pieces as a GameEngine with the same seed and bag mode
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed the seed of the piece stream
+     * @param bag  true to deal from bags, as GameEngine.setBagMode
+     * @return the state
+     */
+    public static GameState newGame(int cols, int rows, long seed, boolean bag) {
+        var engine = new GameEngine(cols, rows, seed);
+        engine.setBagMode(bag);
+        engine.initialiseGame();
+        return engine.getState();
+    }
+
+    /**
+     * Get the value of a cell
+     *
+     * @param x column
+     * @param y row
+     * @return the value, or -1 if the cell is outside the board
+     */
+    public int get(int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return -1;
+        return board[y][x];
+    }
+
+    /**
+     * Check whether the current piece can be placed centred on the given column and row
+     *
+     * @param x column
+     * @param y row
+     * @return true if the piece fits
+     */
+    public boolean canPlayPiece(int x, int y) {
+        return fits(currentPiece, x, y);
+    }
+
+    private boolean fits(GamePiece piece, int x, int y) {
+        for (var block = 0; block < piece.getBlockCount(); block++) {
+            if (get(x + piece.getOffsetX(block), y + piece.getOffsetY(block)) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Place the current piece centred on the given column and row, clear any full lines and move on to the next piece
+     *
+     * @param x column
+     * @param y row
+     * @return the new state, or null if the piece did not fit or the game is over
+     */
+    public GameState playPiece(int x, int y) {
+        if (gameOver || !canPlayPiece(x, y)) return null;
+        var engine = engine();
+        engine.playPiece(x, y);
+        return engine.getState();
+    }
+
+    /**
+     * Rotate the current piece
+     *
+     * @param rotations number of rotations
+     * @return the new state
+     */
+    public GameState rotateCurrentPiece(int rotations) {
+        return withPieces(currentPiece.rotate(rotations), followingPiece);
+    }
+
+    /**
+     * Swap the current and following pieces
+     *
+     * @return the new state
+     */
+    public GameState swapCurrentPiece() {
+        return withPieces(followingPiece, currentPiece);
+    }
+
+    private GameState withPieces(GamePiece current, GamePiece following) {
+        return new GameState(cols, rows, board, current, following, score, multiplier, level, lives, gameOver,
+                piecesPlayed, linesCleared, seed, bag, generatorState);
+    }
+
+    /**
+     * Handle the timer running out before a piece was placed. Loses a life and deals new pieces, or ends the game if
+     * there are no lives left.
+     *
+     * @return the new state
+     */
+    public GameState timerExpired() {
+        var engine = engine();
+        engine.timerExpired();
+        return engine.getState();
+    }
+
+    /**
+     * Check whether either the current or the following piece fits anywhere on the board in any rotation
+     *
+     * @return true if there is a legal move
+     */
+    public boolean hasLegalMove() {
+        return fitsAnywhere(currentPiece.getPiece()) || fitsAnywhere(followingPiece.getPiece());
+    }
+
+    private boolean fitsAnywhere(int piece) {
+        var placements = PlacementTable.forSize(cols, rows);
+        for (var i = 0; i < placements.getPlacementCount(piece); i++) {
+            var gamePiece = GamePiece.createPiece(piece, placements.getPlacementRotation(piece, i));
+            if (fits(gamePiece, placements.getPlacementX(piece, i), placements.getPlacementY(piece, i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get an engine at this state, to make a move by the engine's own rules. Taking its state afterwards shares every
+     * row the move did not change with this state.
+     */
+    private GameEngine engine() {
+        var engine = new GameEngine(cols, rows, seed);
+        engine.setState(this);
+        return engine;
+    }
+
+    /**
+     * Check whether a row is held by both this state and another, so was not changed between them
+     *
+     * @param other the other state
+     * @param row   the row
+     * @return true if the row is shared
+     */
+    public boolean sharesRow(GameState other, int row) {
+        return board[row] == other.board[row];
+    }
+
+    /**
+     * Get a row of the board, for a new state to share. The array must not be changed.
+     *
+     * @param row the row
+     * @return the value of each cell in the row
+     */
+    byte[] row(int row) {
+        return board[row];
+    }
+
+    /**
+     * Get how long the player has to place the current piece at this level
+     *
+     * @return delay in milliseconds
+     */
+    public int getTimerDelay() {
+        return Math.max(2500, (12000 - (500 * level)));
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getPiecesPlayed() {
+        return piecesPlayed;
+    }
+
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Get the seed of the piece stream
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Check whether pieces are dealt from bags
+     *
+     * @return true in bag mode
+     */
+    public boolean isBagMode() {
+        return bag;
+    }
+
+    /**
+     * Get the position in the piece stream, as PieceQueue.getState
+     *
+     * @return the state of the piece stream
+     */
+    public long getGeneratorState() {
+        return generatorState;
+    }
+}
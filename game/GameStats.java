@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The statistics shown alongside a game, taken together from one GameSnapshot so the UI can update every label from a
+ * single value, and skip the update entirely when nothing shown has changed.
+ *
+ * @param score        the score
+ * @param level        the level
+ * @param lives        lives left
+ * @param multiplier   the multiplier
+ * @param piecesPlayed pieces placed so far
+ * @param linesCleared lines cleared so far
+ */
+public record GameStats(int score, int level, int lives, int multiplier, int piecesPlayed, int linesCleared) {
+}
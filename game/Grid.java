@@ -4,16 +4,29 @@ import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.journal.JournalCategory;
+
+import java.util.Arrays;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  *
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * The values are held in a flat int array with a one-cell border of SENTINEL values around the board, so that a piece,
+ * whose blocks are at most one cell from its centre, can be checked against any centre on the board with no bounds
+ * checks. Each value can also be viewed as an IntegerProperty, for binding to the display; the properties are only
+ * built for cells asked for with getGridProperty, so a grid used only by the engine never builds any.
  *
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
+ * Alongside the values the Grid keeps a bit-packed occupancy board, with one bit per cell at index y * cols + x, and a
+ * running count of the filled cells in every row and column. Each change to a cell updates the counts and notes any
+ * line it fills, so after a placement only those lines need checking, and they are cleared with precomputed masks.
+ *
+ * The Grid also keeps a Zobrist hash of its occupancy, for every symmetry of the board, updated as cells fill and
+ * empty. Searches can use it to recognise a board they have already evaluated, whatever order of moves reached it.
+ *
  * The Grid should be linked to a GameBoard for it's display.
  */
 public class Grid {
@@ -29,9 +42,81 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * The value held on the border around the board, which no piece fits over
+     */
+    public static final int SENTINEL = -1;
+
+    /**
+     * The value of each cell at index (y + 1) * stride + x + 1, with SENTINEL in the border
+     */
+    private final int[] cells;
+
+    /**
+     * The width of a row of cells, including the border either side
+     */
+    private final int stride;
+
+    /**
+     * Views of the cells as properties at index y * cols + x, built when first asked for. Null until one is asked for.
      */
-    private final SimpleIntegerProperty[][] grid;
+    private SimpleIntegerProperty[] properties = null;
+
+    /**
+     * The occupancy board, one bit per cell at index y * cols + x. A bit is set when the cell holds a non-zero value.
+     */
+    private final long[] occupied;
+
+    /**
+     * The mask of bits making up each row
+     */
+    private final long[][] rowMasks;
+
+    /**
+     * The first and last word of the occupancy board each row touches
+     */
+    private final int[] rowFirstWord;
+    private final int[] rowLastWord;
+
+    /**
+     * The mask of bits making up each column
+     */
+    private final long[][] columnMasks;
+
+    /**
+     * The number of filled cells in each row and column
+     */
+    private final int[] rowCounts;
+    private final int[] columnCounts;
+
+    /**
+     * The rows and columns that have become full since the last call to findFullLines, with a flag per line so each is
+     * only noted once
+     */
+    private final int[] pendingRows;
+    private final int[] pendingColumns;
+    private final boolean[] rowPending;
+    private final boolean[] columnPending;
+    private int pendingRowCount = 0;
+    private int pendingColumnCount = 0;
+
+    /**
+     * The full rows and columns found by the last call to findFullLines
+     */
+    private final int[] fullRows;
+    private final int[] fullColumns;
+    private int fullRowCount = 0;
+    private int fullColumnCount = 0;
+
+    /**
+     * The cells belonging to the full lines found by the last call to findFullLines
+     */
+    private final long[] fullLineCells;
+
+    /**
+     * The Zobrist keys for this size of board, and the current hash of the occupancy under each symmetry
+     */
+    private final Zobrist zobrist;
+    private final long[] hashes;
 
     private static final Logger logger = LogManager.getLogger(Grid.class);
 
@@ -46,34 +131,103 @@ public class Grid {
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        //Create the grid itself, empty inside its border
+        stride = cols + 2;
+        cells = new int[stride * (rows + 2)];
+        Arrays.fill(cells, SENTINEL);
+        for (var y = 0; y < rows; y++) {
+            Arrays.fill(cells, cell(0, y), cell(cols, y), 0);
+        }
 
-        //Add a SimpleIntegerProperty to every block in the grid
+        //Build the occupancy board and the masks for every row and column
+        var words = (cols * rows + 63) >>> 6;
+        occupied = new long[words];
+        fullLineCells = new long[words];
+        rowMasks = new long[rows][words];
+        rowFirstWord = new int[rows];
+        rowLastWord = new int[rows];
+        columnMasks = new long[cols][words];
         for (var y = 0; y < rows; y++) {
+            rowFirstWord[y] = (y * cols) >>> 6;
+            rowLastWord[y] = (y * cols + cols - 1) >>> 6;
             for (var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
+                var index = y * cols + x;
+                rowMasks[y][index >>> 6] |= 1L << index;
+                columnMasks[x][index >>> 6] |= 1L << index;
             }
         }
+
+        rowCounts = new int[rows];
+        columnCounts = new int[cols];
+        pendingRows = new int[rows];
+        pendingColumns = new int[cols];
+        rowPending = new boolean[rows];
+        columnPending = new boolean[cols];
+        fullRows = new int[rows];
+        fullColumns = new int[cols];
+
+        zobrist = Zobrist.forSize(cols, rows);
+        hashes = new long[zobrist.getSymmetries()];
     }
     /** Reset the grid to 0 values.*/
     public void clear() {
         for (int y = 0; y < this.rows; ++y) {
-            for (int x = 0; x < this.cols; ++x) {
-                this.grid[x][y].set(0);
+            Arrays.fill(cells, cell(0, y), cell(cols, y), 0);
+        }
+        if (properties != null) {
+            for (var property : properties) {
+                if (property != null) property.set(0);
             }
         }
+        Arrays.fill(occupied, 0L);
+        Arrays.fill(fullLineCells, 0L);
+        Arrays.fill(rowCounts, 0);
+        Arrays.fill(columnCounts, 0);
+        Arrays.fill(rowPending, false);
+        Arrays.fill(columnPending, false);
+        pendingRowCount = 0;
+        pendingColumnCount = 0;
+        fullRowCount = 0;
+        fullColumnCount = 0;
+        Arrays.fill(hashes, 0L);
+    }
+
+    /**
+     * Get the index of a cell in the cells array
+     *
+     * @param x column, from -1 to cols
+     * @param y row, from -1 to rows
+     * @return the index
+     */
+    private int cell(int x, int y) {
+        return (y + 1) * stride + x + 1;
     }
 
     /**
      * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
+     * The property is built the first time it is asked for, and follows the cell from then on; setting it sets the
+     * cell.
      *
      * @param x column
      * @param y row
      * @return the IntegerProperty at the given x and y in this grid
      */
     public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No cell at " + x + "," + y + " in a " + cols + "x" + rows + " grid");
+        }
+        if (properties == null) {
+            properties = new SimpleIntegerProperty[cols * rows];
+        }
+        var index = y * cols + x;
+        var property = properties[index];
+        if (property == null) {
+            property = new SimpleIntegerProperty(cells[cell(x, y)]);
+            //writes to the view reach the model; set skips this when the value is unchanged, so it does not loop
+            property.addListener((observable, oldValue, newValue) -> set(x, y, newValue.intValue()));
+            properties[index] = property;
+        }
+        return property;
     }
 
     /**
@@ -84,7 +238,277 @@ public class Grid {
      * @param value the new value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No cell at " + x + "," + y + " in a " + cols + "x" + rows + " grid");
+        }
+        var position = cell(x, y);
+        if (cells[position] == value) return;
+        cells[position] = value;
+
+        //Keep the occupancy board and line counts in step with the value
+        var index = y * cols + x;
+        var word = index >>> 6;
+        var bit = 1L << index;
+        var wasOccupied = (occupied[word] & bit) != 0;
+        if (value != 0 && !wasOccupied) {
+            occupied[word] |= bit;
+            filled(x, y);
+            toggleHash(index);
+        } else if (value == 0 && wasOccupied) {
+            occupied[word] &= ~bit;
+            rowCounts[y]--;
+            columnCounts[x]--;
+            toggleHash(index);
+        }
+        notifyProperty(index, value);
+    }
+
+    /**
+     * Update the property viewing a cell, if one has been built
+     *
+     * @param index cell index, y * cols + x
+     * @param value the new value
+     */
+    private void notifyProperty(int index, int value) {
+        if (properties == null) return;
+        var property = properties[index];
+        if (property != null) property.set(value);
+    }
+
+    /**
+     * Flip a cell in the hash of every symmetry of the board
+     *
+     * @param index cell index, y * cols + x
+     */
+    private void toggleHash(int index) {
+        for (var symmetry = 0; symmetry < hashes.length; symmetry++) {
+            hashes[symmetry] ^= zobrist.getKey(symmetry, index);
+        }
+    }
+
+    /**
+     * Get the Zobrist hash of which cells are filled. Cell values (colours) are not part of the hash.
+     *
+     * @return the hash
+     */
+    public long getHash() {
+        return hashes[0];
+    }
+
+    /**
+     * Get the Zobrist hash of which cells are filled, the same for every rotation and reflection of the board. Use it
+     * for evaluations that depend only on the board; anything that also depends on which pieces are in play should use
+     * getHash, as the pieces are not transformed.
+     *
+     * @return the smallest hash over the board's symmetries
+     */
+    public long getCanonicalHash() {
+        var canonical = hashes[0];
+        for (var symmetry = 1; symmetry < hashes.length; symmetry++) {
+            canonical = Math.min(canonical, hashes[symmetry]);
+        }
+        return canonical;
+    }
+
+    /**
+     * Count a newly filled cell, noting its row and column if they are now full
+     *
+     * @param x column
+     * @param y row
+     */
+    private void filled(int x, int y) {
+        if (++rowCounts[y] == cols && !rowPending[y]) {
+            rowPending[y] = true;
+            pendingRows[pendingRowCount++] = y;
+        }
+        if (++columnCounts[x] == rows && !columnPending[x]) {
+            columnPending[x] = true;
+            pendingColumns[pendingColumnCount++] = x;
+        }
+    }
+
+    /**
+     * Check whether the cell at the given x and y index holds a block
+     *
+     * @param x column
+     * @param y row
+     * @return true if the cell is occupied
+     */
+    public boolean isOccupied(int x, int y) {
+        var index = y * cols + x;
+        return (occupied[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Get one word of the occupancy board, holding the bits for cells 64 * word up to 64 * word + 63, at index
+     * y * cols + x
+     *
+     * @param word word index
+     * @return the occupancy bits
+     */
+    public long getOccupiedWord(int word) {
+        return occupied[word];
+    }
+
+    /**
+     * Check whether every cell in the given row holds a block
+     *
+     * @param y row
+     * @return true if the row is full
+     */
+    public boolean isRowFull(int y) {
+        return rowCounts[y] == cols;
+    }
+
+    /**
+     * Check whether every cell in the given column holds a block
+     *
+     * @param x column
+     * @return true if the column is full
+     */
+    public boolean isColumnFull(int x) {
+        return columnCounts[x] == rows;
+    }
+
+    /**
+     * Get the number of filled cells in the given row
+     *
+     * @param y row
+     * @return filled cells
+     */
+    public int getRowCount(int y) {
+        return rowCounts[y];
+    }
+
+    /**
+     * Get the number of filled cells in the given column
+     *
+     * @param x column
+     * @return filled cells
+     */
+    public int getColumnCount(int x) {
+        return columnCounts[x];
+    }
+
+    /**
+     * Find the rows and columns that have become full since this was last called, and remember their cells, ready to
+     * be cleared by clearFullLines. Only the lines noted as filling up are checked, so this costs nothing when a
+     * placement completes no lines.
+     *
+     * @return the number of full lines found
+     */
+    public int findFullLines() {
+        if (fullRowCount + fullColumnCount > 0) {
+            Arrays.fill(fullLineCells, 0L);
+        }
+        fullRowCount = 0;
+        fullColumnCount = 0;
+
+        for (var i = 0; i < pendingRowCount; i++) {
+            var y = pendingRows[i];
+            rowPending[y] = false;
+            //the row may have been emptied again since it filled
+            if (!isRowFull(y)) continue;
+            fullRows[fullRowCount++] = y;
+            var mask = rowMasks[y];
+            for (var word = rowFirstWord[y]; word <= rowLastWord[y]; word++) {
+                fullLineCells[word] |= mask[word];
+            }
+        }
+        pendingRowCount = 0;
+
+        for (var i = 0; i < pendingColumnCount; i++) {
+            var x = pendingColumns[i];
+            columnPending[x] = false;
+            if (!isColumnFull(x)) continue;
+            fullColumns[fullColumnCount++] = x;
+            var mask = columnMasks[x];
+            for (var word = 0; word < fullLineCells.length; word++) {
+                fullLineCells[word] |= mask[word];
+            }
+        }
+        pendingColumnCount = 0;
+
+        return fullRowCount + fullColumnCount;
+    }
+
+    /**
+     * Get the number of full rows found by the last call to findFullLines
+     *
+     * @return number of full rows
+     */
+    public int getFullRowCount() {
+        return fullRowCount;
+    }
+
+    /**
+     * Get one of the full rows found by the last call to findFullLines
+     *
+     * @param i index, below getFullRowCount()
+     * @return the row
+     */
+    public int getFullRow(int i) {
+        return fullRows[i];
+    }
+
+    /**
+     * Get the number of full columns found by the last call to findFullLines
+     *
+     * @return number of full columns
+     */
+    public int getFullColumnCount() {
+        return fullColumnCount;
+    }
+
+    /**
+     * Get one of the full columns found by the last call to findFullLines
+     *
+     * @param i index, below getFullColumnCount()
+     * @return the column
+     */
+    public int getFullColumn(int i) {
+        return fullColumns[i];
+    }
+
+    /**
+     * Get the cells found in full lines by the last call to findFullLines, as a bitset with one bit per cell at index
+     * y * cols + x. The array is reused and should not be modified.
+     *
+     * @return the full line cells
+     */
+    public long[] getFullLineCells() {
+        return fullLineCells;
+    }
+
+    /**
+     * Empty every cell found by the last call to findFullLines. A cell shared by a full row and a full column is only
+     * cleared (and counted) once.
+     *
+     * @return the number of blocks cleared
+     */
+    public int clearFullLines() {
+        if (fullRowCount + fullColumnCount == 0) return 0;
+        var cleared = 0;
+        for (var word = 0; word < fullLineCells.length; word++) {
+            var bits = fullLineCells[word];
+            if (bits == 0) continue;
+            //only the cells still holding blocks are emptied and counted
+            bits &= occupied[word];
+            cleared += Long.bitCount(bits);
+            occupied[word] &= ~bits;
+            while (bits != 0) {
+                var index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                var x = index % cols;
+                var y = index / cols;
+                cells[cell(x, y)] = 0;
+                notifyProperty(index, 0);
+                rowCounts[y]--;
+                columnCounts[x]--;
+                toggleHash(index);
+                bits &= bits - 1;
+            }
+        }
+        return cleared;
     }
 
     /**
@@ -96,28 +520,31 @@ public class Grid {
      * @return - whether the piece can be played or not
      */
     public boolean canPlayPiece(GamePiece piece, int placeX, int placeY) {
-        logger.info("Checking if we can play the piece {} at {},{}", piece, placeX, placeY);
-        //one to left
-        //one above
-        int topX = placeX - 1;
-        int topY = placeY - 1;
-
-
-        int[][] blocks = piece.getBlocks(); //2d array
-        //return if we cannot play a piece
-
-        for (var blockX = 0; blockX < blocks.length; blockX++) {
-            for (var blockY = 0; blockY < blocks.length; blockY++) {
-                var blockValue = blocks[blockX][blockY];
-                if (blockValue > 0) {
-                    //Checks if we can place this block on our grid
-                    var gridValue = get(topX + blockX, topY + blockY);
-                    if (gridValue != 0){
-                        logger.info("unable to place block, conflict at {},{}", placeX + blockX, placeY + blockY);
-                        return false;
-                    }
+        if (placeX >= 0 && placeX < cols && placeY >= 0 && placeY < rows) {
+            //every block is within the border, which holds SENTINEL, so any non-zero cell is in the way
+            var centre = cell(placeX, placeY);
+            for (var block = 0; block < piece.getBlockCount(); block++) {
+                if (cells[centre + piece.getOffsetY(block) * stride + piece.getOffsetX(block)] != 0) {
+                    EventJournal.global().record(JournalCategory.CONFLICT,
+                            EventJournal.piece(piece.getPiece(), piece.getRotation()),
+                            EventJournal.cell(placeX + piece.getOffsetX(block), placeY + piece.getOffsetY(block)));
+                    return false;
                 }
             }
+            return true;
+        }
+
+        //only the occupied blocks of the piece are checked, as offsets from its centre
+        for (var block = 0; block < piece.getBlockCount(); block++) {
+            var blockX = placeX + piece.getOffsetX(block);
+            var blockY = placeY + piece.getOffsetY(block);
+            //Checks if we can place this block on our grid
+            var gridValue = get(blockX, blockY);
+            if (gridValue != 0){
+                EventJournal.global().record(JournalCategory.CONFLICT,
+                        EventJournal.piece(piece.getPiece(), piece.getRotation()), EventJournal.cell(blockX, blockY));
+                return false;
+            }
         }
         //nothing is in the way
         return true;
@@ -130,26 +557,14 @@ public class Grid {
      * @param placeY - placement on y
      */
     public void playPiece(GamePiece piece, int placeX, int placeY){
-        logger.info("Playing the piece {} at {},{}",piece, placeX,placeY);
-
-        //center of the piece
-        //one to left
-        //one above
-        int topX = placeX - 1;
-        int topY = placeY - 1;
-
         int value = piece.getValue();
-        int [][] blocks = piece.getBlocks(); //2d array
         //return if we cannot play a piece
         if(!canPlayPiece(piece, placeX, placeY)) return;
+        EventJournal.global().record(JournalCategory.PLACEMENT,
+                EventJournal.piece(piece.getPiece(), piece.getRotation()), EventJournal.cell(placeX, placeY));
 
-        for (var blockX = 0; blockX < blocks.length; blockX++) {
-            for (var blockY = 0; blockY < blocks.length; blockY++) {
-                var blockValue = blocks[blockX][blockY];
-                if (blockValue > 0) {
-                    set(topX + blockX, topY + blockY, value);
-                }
-            }
+        for (var block = 0; block < piece.getBlockCount(); block++) {
+            set(placeX + piece.getOffsetX(block), placeY + piece.getOffsetY(block), value);
         }
     }
 
@@ -160,13 +575,11 @@ public class Grid {
      * @return the value
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
             //No such index
-            return -1;
+            return SENTINEL;
         }
+        return cells[cell(x, y)];
     }
 
     /**
@@ -0,0 +1,111 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * A queue of commands for one owner, run one at a time in the order they were sent. Whichever thread sends a command,
+ * it runs on the mailbox's thread, so state touched only by commands has a single writer and needs no locks.
+ *
+ * The mailbox borrows a thread from a shared pool while it has commands waiting and gives it back when empty, so an
+ * idle owner holds no thread and many mailboxes can share a few threads.
+ */
+public class Mailbox implements Executor {
+
+    private static final Logger logger = LogManager.getLogger(Mailbox.class);
+
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Executor pool;
+
+    /**
+     * The thread running commands, while it is
+     */
+    private volatile Thread owner = null;
+
+    /**
+     * Create a mailbox running its commands on the common pool
+     */
+    public Mailbox() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a mailbox running its commands on the given pool
+     *
+     * @param pool where to borrow a thread from
+     */
+    public Mailbox(Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Send a command, to run after every command already sent
+     *
+     * @param command the command
+     */
+    @Override
+    public void execute(Runnable command) {
+        commands.add(command);
+        if (scheduled.compareAndSet(false, true)) {
+            pool.execute(this::drain);
+        }
+    }
+
+    /**
+     * Send a command that produces a result
+     *
+     * @param command the command
+     * @param <T>     the type of result
+     * @return the result, once the command has run
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> command) {
+        var result = new CompletableFuture<T>();
+        execute(() -> {
+            try {
+                result.complete(command.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Check whether the calling thread is the one running this mailbox's commands
+     *
+     * @return true if called from a command
+     */
+    public boolean isOwnerThread() {
+        return owner == Thread.currentThread();
+    }
+
+    private void drain() {
+        owner = Thread.currentThread();
+        try {
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                try {
+                    command.run();
+                } catch (Throwable e) {
+                    logger.error("Command failed", e);
+                }
+            }
+        } finally {
+            owner = null;
+            scheduled.set(false);
+        }
+        //a command sent after the queue emptied but before scheduled was cleared would otherwise wait for the next
+        if (!commands.isEmpty() && scheduled.compareAndSet(false, true)) {
+            pool.execute(this::drain);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The MoveLog records everything a player did in a game, one int per move, so that the game can be simulated again
+ * from its seed.
+ *
+ * Each move packs its type in the top 2 bits, then the piece number (4 bits), the rotation (2 bits), and the column
+ * and row (12 bits each). Only placements, swaps and timer expiries are recorded: rotations are captured by the
+ * rotation of the piece placed, and lives lost because no piece fitted follow from the rules. Boards wider or taller
+ * than 4096 are recorded in an EndlessMoveLog instead.
+ */
+public class MoveLog {
+
+    /**
+     * Move types
+     */
+    public static final int PLACE = 0;
+    public static final int SWAP = 1;
+    public static final int TIMER = 2;
+
+    /**
+     * The recorded moves
+     */
+    private int[] moves = new int[64];
+
+    /**
+     * The number of moves recorded
+     */
+    private int size = 0;
+
+    /**
+     * Record a piece being placed
+     *
+     * @param piece    piece number
+     * @param rotation rotation of the piece
+     * @param x        column the piece was centred on
+     * @param y        row the piece was centred on
+     */
+    public void place(int piece, int rotation, int x, int y) {
+        add(pack(PLACE, piece, rotation, x, y));
+    }
+
+    /**
+     * Record the current and following pieces being swapped
+     */
+    public void swap() {
+        add(pack(SWAP, 0, 0, 0, 0));
+    }
+
+    /**
+     * Record the timer running out
+     */
+    public void timerExpired() {
+        add(pack(TIMER, 0, 0, 0, 0));
+    }
+
+    /**
+     * Add an already packed move
+     *
+     * @param move the move
+     */
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Pack a move into an int
+     *
+     * @param type     move type
+     * @param piece    piece number
+     * @param rotation rotation
+     * @param x        column, from 0 to 4095
+     * @param y        row, from 0 to 4095
+     * @return the packed move
+     * @throws IllegalArgumentException if the column or row does not fit in 12 bits
+     */
+    public static int pack(int type, int piece, int rotation, int x, int y) {
+        if ((x & ~0xFFF) != 0 || (y & ~0xFFF) != 0) {
+            throw new IllegalArgumentException("Move at " + x + "," + y + " is outside the range a MoveLog can hold");
+        }
+        return type << 30 | piece << 26 | rotation << 24 | x << 12 | y;
+    }
+
+    public static int typeOf(int move) {
+        return move >>> 30;
+    }
+
+    public static int pieceOf(int move) {
+        return (move >>> 26) & 0xF;
+    }
+
+    public static int rotationOf(int move) {
+        return (move >>> 24) & 0x3;
+    }
+
+    public static int xOf(int move) {
+        return (move >>> 12) & 0xFFF;
+    }
+
+    public static int yOf(int move) {
+        return move & 0xFFF;
+    }
+
+    /**
+     * Get a recorded move
+     *
+     * @param i index, below size()
+     * @return the packed move
+     */
+    public int get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("No such move: " + i);
+        return moves[i];
+    }
+
+    /**
+     * Get the number of moves recorded
+     *
+     * @return number of moves
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every recorded move
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Play the recorded moves on an engine. The engine should be newly initialised from the same seed and board size as
+     * the game that was recorded, and should record into a different log.
+     *
+     * @param engine the engine to play on
+     * @throws IllegalStateException if the log does not match the engine's pieces
+     */
+    public void replay(GameEngine engine) {
+        for (var i = 0; i < size; i++) {
+            apply(engine, moves[i], i);
+        }
+    }
+
+    /**
+     * Play a single recorded move on an engine
+     *
+     * @param engine the engine to play on
+     * @param move   the packed move
+     * @param index  the move's position in its log, for error messages
+     * @throws IllegalStateException if the move does not match the engine's pieces
+     */
+    public static void apply(GameEngine engine, int move, int index) {
+        switch (typeOf(move)) {
+            case PLACE -> {
+                var current = engine.getCurrentPiece();
+                if (current.getPiece() != pieceOf(move)) {
+                    throw new IllegalStateException("Move " + index + " places piece " + pieceOf(move)
+                            + " but the current piece is " + current.getPiece());
+                }
+                engine.rotateCurrentPiece(rotationOf(move) - current.getRotation());
+                if (!engine.playPiece(xOf(move), yOf(move))) {
+                    throw new IllegalStateException("Move " + index + " does not fit at " + xOf(move) + "," + yOf(move));
+                }
+            }
+            case SWAP -> engine.swapCurrentPiece();
+            case TIMER -> engine.timerExpired();
+            default -> throw new IllegalStateException("Unknown move type at " + index);
+        }
+    }
+
+    /**
+     * Write the log
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (var i = 0; i < size; i++) {
+            out.writeInt(moves[i]);
+        }
+    }
+
+    /**
+     * Read a log written by writeTo
+     *
+     * @param in where to read from
+     * @return the log
+     * @throws IOException if reading fails
+     */
+    public static MoveLog readFrom(DataInput in) throws IOException {
+        var log = new MoveLog();
+        var count = in.readInt();
+        for (var i = 0; i < count; i++) {
+            log.add(in.readInt());
+        }
+        return log;
+    }
+}
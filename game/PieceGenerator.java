@@ -0,0 +1,118 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The PieceGenerator produces the stream of random piece numbers for a game. The stream is fixed by its seed, so a game
+ * can be played again exactly from its seed and its move log.
+ *
+ * The stream is SplitMix64, whose whole state is a single long. getState and setState let a saved game or a replay
+ * keyframe carry on the stream from exactly where it was.
+ *
+ * A generator belongs to one game on one thread. For parallel simulation each thread should take its own stream,
+ * either with split or with forStream, which gives the same independent stream for the same seed and stream number on
+ * every run.
+ */
+public class PieceGenerator {
+
+    /**
+     * The step between SplitMix64 states
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The seed this stream started from
+     */
+    private final long seed;
+
+    /**
+     * The current position in the stream
+     */
+    private long state;
+
+    /**
+     * Create a new piece stream from the given seed
+     *
+     * @param seed the seed
+     */
+    public PieceGenerator(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * Create a new piece stream from a random seed
+     *
+     * @return the generator
+     */
+    public static PieceGenerator randomSeed() {
+        return new PieceGenerator(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Get one of many independent streams derived from a single seed, for example one per simulation thread or per
+     * game in a batch
+     *
+     * @param seed   the shared seed
+     * @param stream the stream number
+     * @return the generator
+     */
+    public static PieceGenerator forStream(long seed, long stream) {
+        return new PieceGenerator(Zobrist.mix(seed ^ Zobrist.mix(stream + GAMMA)));
+    }
+
+    /**
+     * Pick the next piece number
+     *
+     * @return a piece number, below GamePiece.PIECES
+     */
+    public int nextPiece() {
+        return (int) (((nextLong() >>> 32) * GamePiece.PIECES) >>> 32);
+    }
+
+    /**
+     * Take the next 64 random bits from the stream
+     *
+     * @return random bits
+     */
+    public long nextLong() {
+        state += GAMMA;
+        return Zobrist.mix(state);
+    }
+
+    /**
+     * Get a new generator whose stream is independent of this one, seeded from this stream
+     *
+     * @return the generator
+     */
+    public PieceGenerator split() {
+        return new PieceGenerator(nextLong());
+    }
+
+    /**
+     * Get the seed this stream started from
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the current position in the stream
+     *
+     * @return the state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Move to a position in the stream previously returned by getState
+     *
+     * @param state the state
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
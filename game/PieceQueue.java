@@ -0,0 +1,223 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The PieceQueue deals pieces from a PieceGenerator, keeping a window of the pieces coming next so they can be shown
+ * as previews or searched ahead by a bot. The queue is a ring of piece numbers refilled many at a time whenever fewer
+ * than the preview depth remain, so dealing a piece is an array read.
+ *
+ * Pieces are either independently random, exactly as PieceGenerator.nextPiece, or dealt from bags: each run of
+ * GamePiece.PIECES pieces holds every piece once, in a shuffled order, so no piece is ever far away.
+ *
+ * Either way, dealing a piece moves the generator on by one step, so a position in the queue is a single long:
+ * getState gives the generator's state at the next piece to be dealt, ignoring pieces queued but not yet dealt, and
+ * setState goes back to it. In bag mode the bags are worked out from the generator's seed and the number of steps
+ * since it, so a queue only resumes bags correctly on a generator with the same seed.
+ */
+public class PieceQueue {
+
+    /**
+     * The step between SplitMix64 states, as PieceGenerator
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The multiplicative inverse of GAMMA, turning a distance between states back into a number of steps
+     */
+    private static final long GAMMA_INVERSE = inverse(GAMMA);
+
+    /**
+     * The most pieces that can be previewed
+     */
+    public static final int MAX_DEPTH = 32;
+
+    /**
+     * Pieces added by each refill beyond the preview depth
+     */
+    private static final int BATCH = 16;
+
+    private final PieceGenerator generator;
+
+    /**
+     * The queued piece numbers, a ring of which head is the next to be dealt
+     */
+    private int[] pieces = new int[BATCH * 2];
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Number of pieces previewed
+     */
+    private int depth = 0;
+
+    /**
+     * Whether pieces are dealt from bags
+     */
+    private boolean bag = false;
+
+    /**
+     * The order of the bag last worked out, and its number
+     */
+    private final int[] bagOrder = new int[GamePiece.PIECES];
+    private long bagNumber = -1;
+
+    /**
+     * Create a new queue dealing from the given generator
+     *
+     * @param generator source of the random pieces
+     */
+    public PieceQueue(PieceGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Deal the next piece
+     *
+     * @return a piece number, below GamePiece.PIECES
+     */
+    public int next() {
+        if (size <= depth) refill();
+        var piece = pieces[head];
+        head = (head + 1) & (pieces.length - 1);
+        size--;
+        return piece;
+    }
+
+    /**
+     * Look ahead at a piece without dealing it
+     *
+     * @param ahead how many pieces ahead, 0 being the next to be dealt; below getDepth() + 1
+     * @return a piece number
+     */
+    public int peek(int ahead) {
+        if (ahead > depth) throw new IndexOutOfBoundsException("Only " + depth + " pieces are previewed");
+        if (size <= ahead) refill();
+        return pieces[(head + ahead) & (pieces.length - 1)];
+    }
+
+    /**
+     * Fill the ring with as many new pieces as it will hold
+     */
+    private void refill() {
+        var needed = depth + 1 + BATCH;
+        if (pieces.length < needed) {
+            var grown = new int[Integer.highestOneBit(needed - 1) << 1];
+            for (var i = 0; i < size; i++) {
+                grown[i] = pieces[(head + i) & (pieces.length - 1)];
+            }
+            pieces = grown;
+            head = 0;
+        }
+
+        var mask = pieces.length - 1;
+        var count = pieces.length - size;
+        var tail = head + size;
+        if (bag) {
+            var step = (generator.getState() - generator.getSeed()) * GAMMA_INVERSE;
+            for (var i = 0; i < count; i++) {
+                generator.nextLong();
+                pieces[(tail + i) & mask] = fromBag(step + i);
+            }
+        } else {
+            for (var i = 0; i < count; i++) {
+                pieces[(tail + i) & mask] = generator.nextPiece();
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Work out the piece dealt at a given step in bag mode
+     *
+     * @param step number of steps since the generator's seed
+     * @return a piece number
+     */
+    private int fromBag(long step) {
+        var number = Long.divideUnsigned(step, GamePiece.PIECES);
+        if (number != bagNumber) {
+            //Fisher-Yates shuffle, from a stream of its own for each bag
+            var shuffle = PieceGenerator.forStream(generator.getSeed(), number);
+            for (var i = 0; i < bagOrder.length; i++) {
+                bagOrder[i] = i;
+            }
+            for (var i = bagOrder.length - 1; i > 0; i--) {
+                var j = (int) (((shuffle.nextLong() >>> 32) * (i + 1)) >>> 32);
+                var swap = bagOrder[i];
+                bagOrder[i] = bagOrder[j];
+                bagOrder[j] = swap;
+            }
+            bagNumber = number;
+        }
+        return bagOrder[(int) Long.remainderUnsigned(step, GamePiece.PIECES)];
+    }
+
+    /**
+     * Set how many pieces are previewed beyond the next one dealt
+     *
+     * @param depth number of pieces, from 0 to MAX_DEPTH
+     */
+    public void setDepth(int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Preview depth must be between 0 and " + MAX_DEPTH + ": " + depth);
+        }
+        this.depth = depth;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Choose between dealing independently random pieces and dealing from bags. Pieces already queued are dealt again
+     * in the new mode.
+     *
+     * @param bag true to deal from bags
+     */
+    public void setBag(boolean bag) {
+        if (this.bag == bag) return;
+        var state = getState();
+        this.bag = bag;
+        setState(state);
+    }
+
+    public boolean isBag() {
+        return bag;
+    }
+
+    /**
+     * Get the position of the next piece to be dealt in the generator's stream
+     *
+     * @return the state
+     */
+    public long getState() {
+        return generator.getState() - size * GAMMA;
+    }
+
+    /**
+     * Move to a position previously returned by getState, forgetting any queued pieces
+     *
+     * @param state the state
+     */
+    public void setState(long state) {
+        generator.setState(state);
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Get the generator pieces are drawn from
+     *
+     * @return the generator
+     */
+    public PieceGenerator getGenerator() {
+        return generator;
+    }
+
+    private static long inverse(long odd) {
+        //Newton's method doubles the number of correct bits each step
+        var inverse = odd;
+        for (var i = 0; i < 5; i++) {
+            inverse *= 2 - odd * inverse;
+        }
+        return inverse;
+    }
+}
@@ -0,0 +1,281 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The PlacementTable lists every position and rotation in which each piece lies entirely inside a board of a given
+ * size, with the cells it would cover packed as masks over the Grid's occupancy board.
+ *
+ * Checking whether a piece fits is then a mask AND per placement, with no bounds checks and no reads of cell values.
+ * Placements that cover the same cells in different rotations (for example every rotation of the Plus) are only kept
+ * once.
+ *
+ * Tables never change once built, so forSize shares one per board size between every game.
+ */
+public class PlacementTable {
+
+    /**
+     * Shared tables for each board size, keyed by cols * 65536 + rows
+     */
+    private static final Map<Integer, PlacementTable> SIZES = new ConcurrentHashMap<>();
+
+    /**
+     * The size of board this table was built for
+     */
+    private final int cols;
+    private final int rows;
+
+    /**
+     * For each piece, the column, row and rotation of each placement
+     */
+    private final int[][] placementX;
+    private final int[][] placementY;
+    private final int[][] placementRotation;
+
+    /**
+     * For each piece, where each placement's masks start in the word and mask arrays. Placement i uses entries
+     * start[i] up to start[i + 1].
+     */
+    private final int[][] start;
+
+    /**
+     * For each piece, the occupancy board word and the mask of cells covered within that word
+     */
+    private final int[][] words;
+    private final long[][] masks;
+
+    /**
+     * Get the shared placement table for a board of the given size, building it the first time
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the table
+     */
+    public static PlacementTable forSize(int cols, int rows) {
+        return SIZES.computeIfAbsent(cols * 65536 + rows, size -> new PlacementTable(cols, rows));
+    }
+
+    /**
+     * Build the placement table for a board of the given size
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public PlacementTable(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+
+        placementX = new int[GamePiece.PIECES][];
+        placementY = new int[GamePiece.PIECES][];
+        placementRotation = new int[GamePiece.PIECES][];
+        start = new int[GamePiece.PIECES][];
+        words = new int[GamePiece.PIECES][];
+        masks = new long[GamePiece.PIECES][];
+
+        var cells = new int[9];
+        var seen = new long[cols * rows];
+        for (var piece = 0; piece < GamePiece.PIECES; piece++) {
+            Arrays.fill(seen, 0L);
+            var found = new ArrayList<int[]>();
+            var wordList = new ArrayList<Integer>();
+            var maskList = new ArrayList<Long>();
+
+            for (var rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                var gamePiece = GamePiece.createPiece(piece, rotation);
+                for (var y = 0; y < rows; y++) {
+                    for (var x = 0; x < cols; x++) {
+                        if (!cover(gamePiece, x, y, cells)) continue;
+                        var blocks = gamePiece.getBlockCount();
+
+                        //skip placements covering the same cells as one already listed
+                        if (!firstOfShape(seen, cells, blocks)) continue;
+
+                        found.add(new int[] {x, y, rotation, wordList.size()});
+                        Arrays.sort(cells, 0, blocks);
+                        var mask = 0L;
+                        for (var block = 0; block < blocks; block++) {
+                            mask |= 1L << cells[block];
+                            var word = cells[block] >>> 6;
+                            if (block + 1 == blocks || cells[block + 1] >>> 6 != word) {
+                                wordList.add(word);
+                                maskList.add(mask);
+                                mask = 0L;
+                            }
+                        }
+                    }
+                }
+            }
+
+            var count = found.size();
+            placementX[piece] = new int[count];
+            placementY[piece] = new int[count];
+            placementRotation[piece] = new int[count];
+            start[piece] = new int[count + 1];
+            for (var i = 0; i < count; i++) {
+                placementX[piece][i] = found.get(i)[0];
+                placementY[piece][i] = found.get(i)[1];
+                placementRotation[piece][i] = found.get(i)[2];
+                start[piece][i] = found.get(i)[3];
+            }
+            start[piece][count] = wordList.size();
+            words[piece] = wordList.stream().mapToInt(Integer::intValue).toArray();
+            masks[piece] = maskList.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * Work out the cells a piece would cover centred on the given column and row
+     *
+     * @param piece the piece
+     * @param x     column
+     * @param y     row
+     * @param cells filled with the index (y * cols + x) of each covered cell, one per block
+     * @return false if part of the piece would lie outside the board
+     */
+    private boolean cover(GamePiece piece, int x, int y, int[] cells) {
+        for (var block = 0; block < piece.getBlockCount(); block++) {
+            var blockX = x + piece.getOffsetX(block);
+            var blockY = y + piece.getOffsetY(block);
+            if (blockX < 0 || blockX >= cols || blockY < 0 || blockY >= rows) return false;
+            cells[block] = blockY * cols + blockX;
+        }
+        return true;
+    }
+
+    /**
+     * Note the shape of a placement, and check whether a placement covering the same cells was already noted.
+     *
+     * The shape is the top-left corner of the cells' bounding box, its anchor, and a 9-bit mask of the cells within
+     * the 3x3 box from there. Placements covering the same cells share an anchor, and there is at most one placement
+     * per rotation at each, so seen holds for each anchor up to ROTATIONS masks of 10 bits, each with a bit set above
+     * the mask to tell it from an empty slot.
+     *
+     * @param seen   the shapes noted so far, by anchor
+     * @param cells  the index of each covered cell
+     * @param blocks number of cells covered
+     * @return true if no placement covering the same cells was noted before
+     */
+    private boolean firstOfShape(long[] seen, int[] cells, int blocks) {
+        var left = cols;
+        var top = rows;
+        for (var block = 0; block < blocks; block++) {
+            left = Math.min(left, cells[block] % cols);
+            top = Math.min(top, cells[block] / cols);
+        }
+        var shape = 1 << 9;
+        for (var block = 0; block < blocks; block++) {
+            shape |= 1 << ((cells[block] / cols - top) * 3 + cells[block] % cols - left);
+        }
+
+        var anchor = top * cols + left;
+        for (var shift = 0; shift < GamePiece.ROTATIONS * 10; shift += 10) {
+            var noted = (int) (seen[anchor] >>> shift) & 0x3FF;
+            if (noted == shape) return false;
+            if (noted == 0) {
+                seen[anchor] |= (long) shape << shift;
+                return true;
+            }
+        }
+        throw new IllegalStateException("More placements share an anchor than there are rotations");
+    }
+
+    /**
+     * Check whether any rotation of the given piece fits anywhere on the grid
+     *
+     * @param grid  the grid, which must be the size this table was built for
+     * @param piece piece number
+     * @return true if there is at least one legal placement
+     */
+    public boolean fitsAnywhere(Grid grid, int piece) {
+        checkSize(grid);
+        var count = placementX[piece].length;
+        for (var i = 0; i < count; i++) {
+            if (fitsUnchecked(grid, piece, i)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a single placement of the given piece fits on the grid
+     *
+     * @param grid      the grid, which must be the size this table was built for
+     * @param piece     piece number
+     * @param placement placement index, below getPlacementCount(piece)
+     * @return true if every cell the placement covers is empty
+     */
+    public boolean fits(Grid grid, int piece, int placement) {
+        checkSize(grid);
+        return fitsUnchecked(grid, piece, placement);
+    }
+
+    private boolean fitsUnchecked(Grid grid, int piece, int placement) {
+        var pieceStart = start[piece];
+        var pieceWords = words[piece];
+        var pieceMasks = masks[piece];
+        for (var j = pieceStart[placement]; j < pieceStart[placement + 1]; j++) {
+            if ((grid.getOccupiedWord(pieceWords[j]) & pieceMasks[j]) != 0) return false;
+        }
+        return true;
+    }
+
+    private void checkSize(Grid grid) {
+        if (grid.getCols() != cols || grid.getRows() != rows) {
+            throw new IllegalArgumentException("Placement table for " + cols + "x" + rows + " used with a "
+                    + grid.getCols() + "x" + grid.getRows() + " grid");
+        }
+    }
+
+    /**
+     * Get the number of distinct placements of the given piece that lie inside the board
+     *
+     * @param piece piece number
+     * @return number of placements
+     */
+    public int getPlacementCount(int piece) {
+        return placementX[piece].length;
+    }
+
+    /**
+     * Get the column the piece is centred on in the given placement
+     *
+     * @param piece     piece number
+     * @param placement placement index
+     * @return column
+     */
+    public int getPlacementX(int piece, int placement) {
+        return placementX[piece][placement];
+    }
+
+    /**
+     * Get the row the piece is centred on in the given placement
+     *
+     * @param piece     piece number
+     * @param placement placement index
+     * @return row
+     */
+    public int getPlacementY(int piece, int placement) {
+        return placementY[piece][placement];
+    }
+
+    /**
+     * Get the rotation of the piece in the given placement
+     *
+     * @param piece     piece number
+     * @param placement placement index
+     * @return rotation, from 0 to 3
+     */
+    public int getPlacementRotation(int piece, int placement) {
+        return placementRotation[piece][placement];
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
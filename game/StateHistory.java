@@ -0,0 +1,100 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.ArrayDeque;
+
+/**
+ * The StateHistory keeps every GameState a game has passed through, for unlimited undo and redo. States share the rows
+ * of the board they have in common, so keeping one costs little more than the rows its move changed, and stepping
+ * backwards or forwards is O(1).
+ *
+ * Moving to a new state after an undo forgets the states that could have been redone.
+ */
+public class StateHistory {
+
+    /**
+     * States before the current one, the most recent first
+     */
+    private final ArrayDeque<GameState> undo = new ArrayDeque<>();
+
+    /**
+     * States undone from, the most recently undone first
+     */
+    private final ArrayDeque<GameState> redo = new ArrayDeque<>();
+
+    /**
+     * The current state
+     */
+    private GameState current;
+
+    /**
+     * Create a history starting from the given state
+     *
+     * @param start the first state
+     */
+    public StateHistory(GameState start) {
+        current = start;
+    }
+
+    /**
+     * Move on to a new state, which becomes the current one
+     *
+     * @param state the new state
+     * @return the new state
+     */
+    public GameState push(GameState state) {
+        undo.push(current);
+        redo.clear();
+        current = state;
+        return state;
+    }
+
+    /**
+     * Go back to the state before the current one
+     *
+     * @return the new current state, or the current one if there is nothing to undo
+     */
+    public GameState undo() {
+        if (undo.isEmpty()) return current;
+        redo.push(current);
+        current = undo.pop();
+        return current;
+    }
+
+    /**
+     * Go forward to the state last undone from
+     *
+     * @return the new current state, or the current one if there is nothing to redo
+     */
+    public GameState redo() {
+        if (redo.isEmpty()) return current;
+        undo.push(current);
+        current = redo.pop();
+        return current;
+    }
+
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    /**
+     * Get the current state
+     *
+     * @return the state
+     */
+    public GameState getCurrent() {
+        return current;
+    }
+
+    /**
+     * Get the number of states that can be undone
+     *
+     * @return number of states
+     */
+    public int getUndoCount() {
+        return undo.size();
+    }
+}
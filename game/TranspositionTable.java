@@ -0,0 +1,169 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size table of board evaluations keyed by Zobrist hash (see Grid.getHash and Grid.getCanonicalHash), shared
+ * by any number of threads without locks.
+ *
+ * Each entry packs a score, the best move, the search depth and the search generation into one long. Entries are
+ * stored as two longs, the hash XORed with the entry and the entry itself, so an entry torn by two threads writing at
+ * once fails the hash check and is treated as a miss rather than returned wrong.
+ *
+ * Slots come in pairs. The first keeps the deepest result, unless it is from an older search generation; the second
+ * always takes the newest result that did not replace the first.
+ */
+public class TranspositionTable {
+
+    /**
+     * Returned by probe when the hash is not in the table
+     */
+    public static final long MISS = 0L;
+
+    /**
+     * The move stored when a result has no best move
+     */
+    public static final int NO_MOVE = 0x7FFF;
+
+    /**
+     * Two longs per slot: the hash XORed with the entry, then the entry
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * Mask selecting a pair of slots from a hash
+     */
+    private final int pairMask;
+
+    /**
+     * The current search generation, from 0 to 255
+     */
+    private volatile int generation = 0;
+
+    /**
+     * Create a new table
+     *
+     * @param entries the number of entries to hold, rounded up to a power of two (at least 2)
+     */
+    public TranspositionTable(int entries) {
+        var size = entries <= 2 ? 2 : Integer.highestOneBit(entries - 1) << 1;
+        slots = new AtomicLongArray(size * 2);
+        pairMask = size / 2 - 1;
+    }
+
+    /**
+     * Look up a board
+     *
+     * @param hash the board's Zobrist hash
+     * @return the entry, to read with scoreOf, moveOf and depthOf, or MISS
+     */
+    public long probe(long hash) {
+        var slot = slotOf(hash);
+        for (var i = slot; i < slot + 4; i += 2) {
+            var entry = slots.getOpaque(i + 1);
+            if (entry != MISS && (slots.getOpaque(i) ^ entry) == hash) return entry;
+        }
+        return MISS;
+    }
+
+    /**
+     * Store the result of evaluating a board
+     *
+     * @param hash  the board's Zobrist hash
+     * @param score the score found
+     * @param depth the depth searched, from 0 to 255
+     * @param move  the best move found, from 0 to 32766, or NO_MOVE
+     */
+    public void store(long hash, int score, int depth, int move) {
+        var entry = pack(score, depth, move, generation);
+        var slot = slotOf(hash);
+
+        //the first slot is kept for the deepest result of the current search
+        var existing = slots.getOpaque(slot + 1);
+        if (existing == MISS || depth >= depthOf(existing) || generationOf(existing) != generation) {
+            write(slot, hash, entry);
+        } else {
+            write(slot + 2, hash, entry);
+        }
+    }
+
+    private void write(int slot, long hash, long entry) {
+        slots.setOpaque(slot, hash ^ entry);
+        slots.setOpaque(slot + 1, entry);
+    }
+
+    private int slotOf(long hash) {
+        return (int) (Zobrist.mix(hash) & pairMask) * 4;
+    }
+
+    /**
+     * Start a new search, so entries from earlier searches give way to new ones
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empty the table
+     */
+    public void clear() {
+        for (var i = 0; i < slots.length(); i++) {
+            slots.setOpaque(i, 0L);
+        }
+    }
+
+    /**
+     * Pack a result into an entry: the score in the top 32 bits, then 15 bits of move, 8 of depth and 8 of generation,
+     * with the lowest bit set to mark the entry as present.
+     */
+    private static long pack(int score, int depth, int move, int generation) {
+        return ((long) score << 32)
+                | ((long) (move & 0x7FFF) << 17)
+                | ((long) (depth & 0xFF) << 9)
+                | ((long) (generation & 0xFF) << 1)
+                | 1L;
+    }
+
+    /**
+     * Get the score from an entry
+     *
+     * @param entry entry returned by probe
+     * @return score
+     */
+    public static int scoreOf(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    /**
+     * Get the best move from an entry
+     *
+     * @param entry entry returned by probe
+     * @return move, or NO_MOVE
+     */
+    public static int moveOf(long entry) {
+        return (int) (entry >>> 17) & 0x7FFF;
+    }
+
+    /**
+     * Get the depth searched from an entry
+     *
+     * @param entry entry returned by probe
+     * @return depth
+     */
+    public static int depthOf(long entry) {
+        return (int) (entry >>> 9) & 0xFF;
+    }
+
+    private static int generationOf(long entry) {
+        return (int) (entry >>> 1) & 0xFF;
+    }
+
+    /**
+     * Get the number of entries the table holds
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return slots.length() / 2;
+    }
+}
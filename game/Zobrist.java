@@ -0,0 +1,119 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zobrist keys for hashing the occupancy of a board of a given size. Each cell has a random 64-bit key, and the hash of
+ * a board is the XOR of the keys of its filled cells, so it can be updated with one XOR whenever a cell fills or empties.
+ *
+ * The keys are also kept for each symmetry of the board (the 8 rotations and reflections of a square board, or the 4
+ * reflections of a rectangular one), so a Grid can track the hash of every transformed copy of itself at once and pick
+ * the smallest as a canonical hash. Line clearing treats rows and columns alike, so every symmetric board plays the
+ * same way.
+ *
+ * Keys are fixed for a board size, so hashes can be compared across grids, games and threads.
+ */
+public class Zobrist {
+
+    /**
+     * Shared keys for each board size, keyed by cols * 65536 + rows
+     */
+    private static final Map<Integer, Zobrist> SIZES = new ConcurrentHashMap<>();
+
+    /**
+     * For each symmetry, the key of each cell index (y * cols + x) as it lands in the transformed board
+     */
+    private final long[][] keys;
+
+    /**
+     * Get the keys for a board of the given size
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the keys
+     */
+    public static Zobrist forSize(int cols, int rows) {
+        return SIZES.computeIfAbsent(cols * 65536 + rows, size -> new Zobrist(cols, rows));
+    }
+
+    private Zobrist(int cols, int rows) {
+        var cells = cols * rows;
+        var symmetries = cols == rows ? 8 : 4;
+
+        //the base keys come from a fixed stream per board size, so every run agrees on them
+        var base = new long[cells];
+        var seed = 0x5DEECE66DL ^ ((long) cols << 32 | rows);
+        for (var index = 0; index < cells; index++) {
+            base[index] = mix(seed + (index + 1) * 0x9E3779B97F4A7C15L);
+        }
+
+        keys = new long[symmetries][cells];
+        for (var symmetry = 0; symmetry < symmetries; symmetry++) {
+            for (var y = 0; y < rows; y++) {
+                for (var x = 0; x < cols; x++) {
+                    keys[symmetry][y * cols + x] = base[transform(symmetry, x, y, cols, rows)];
+                }
+            }
+        }
+    }
+
+    /**
+     * Find where a cell lands under one of the board's symmetries
+     *
+     * @param symmetry which symmetry, from 0 (identity) to 7
+     * @param x        column
+     * @param y        row
+     * @param cols     number of columns
+     * @param rows     number of rows
+     * @return the cell index (y * cols + x) in the transformed board
+     */
+    private static int transform(int symmetry, int x, int y, int cols, int rows) {
+        var flipX = cols - 1 - x;
+        var flipY = rows - 1 - y;
+        return switch (symmetry) {
+            case 0 -> y * cols + x;
+            case 1 -> y * cols + flipX;
+            case 2 -> flipY * cols + x;
+            case 3 -> flipY * cols + flipX;
+            //the rest swap rows and columns, so only apply to square boards
+            case 4 -> x * cols + y;
+            case 5 -> x * cols + flipY;
+            case 6 -> flipX * cols + y;
+            case 7 -> flipX * cols + flipY;
+            default -> throw new IndexOutOfBoundsException("No such symmetry: " + symmetry);
+        };
+    }
+
+    /**
+     * Scramble a 64-bit value (the SplitMix64 finaliser)
+     *
+     * @param z value to scramble
+     * @return scrambled value
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Get the number of symmetries keys are kept for
+     *
+     * @return 8 for a square board, otherwise 4
+     */
+    public int getSymmetries() {
+        return keys.length;
+    }
+
+    /**
+     * Get the key of a cell under one of the board's symmetries
+     *
+     * @param symmetry which symmetry, from 0 (identity)
+     * @param index    cell index, y * cols + x
+     * @return the key
+     */
+    public long getKey(int symmetry, int index) {
+        return keys[symmetry][index];
+    }
+}
@@ -0,0 +1,285 @@
+package uk.ac.soton.comp1206.journal;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventJournal records typed game events into a fixed-size ring buffer of longs, for diagnostics that are cheap
+ * enough to leave on in the hot path. Recording an event claims a slot and writes four longs: no strings are built and
+ * nothing is allocated. A category sampled at 0 costs a single array read.
+ *
+ * Events are drained, in order, to a JournalSink, either on demand with drain or from a background thread started with
+ * startDraining. Writing to log4j is one such sink and is optional. If the writers get more than a buffer ahead of the
+ * drain, the oldest events are overwritten and reported to the sink as dropped.
+ *
+ * Any number of threads may record at once. Each slot holds its sequence number, which is cleared while the slot is
+ * written and set once it is complete, so the drain never returns a half-written or overwritten event.
+ */
+public class EventJournal {
+
+    /**
+     * Longs per event: sequence + 1 (0 while being written), time, category and int, long
+     */
+    private static final int SLOT = 4;
+
+    /**
+     * How long the background drain sleeps when it finds nothing to drain
+     */
+    private static final long DRAIN_INTERVAL = 10_000_000L;
+
+    private static final JournalCategory[] CATEGORIES = JournalCategory.values();
+
+    /**
+     * The journal shared by the whole game
+     */
+    private static final EventJournal GLOBAL = new EventJournal(1 << 14);
+
+    /**
+     * The ring buffer
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * Mask selecting a slot from a sequence number
+     */
+    private final int mask;
+
+    /**
+     * The sequence number the next event will take
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The sequence number the next drain starts from
+     */
+    private long drained = 0;
+
+    /**
+     * Record one event in this many for each category, or none if 0. Replaced whole when a rate changes.
+     */
+    private volatile int[] rates;
+
+    /**
+     * Events seen in each category, for sampling. Updated without synchronisation, so counts from threads recording
+     * the same category at once may be lost; that only shifts which events are sampled.
+     */
+    private final int[] seen = new int[CATEGORIES.length];
+
+    /**
+     * The background drain, if running
+     */
+    private Thread drainer = null;
+
+    /**
+     * Create a new journal
+     *
+     * @param capacity number of events held before the oldest are overwritten, rounded up to a power of two
+     */
+    public EventJournal(int capacity) {
+        var size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicLongArray(size * SLOT);
+        mask = size - 1;
+        rates = new int[CATEGORIES.length];
+        resetRates();
+    }
+
+    /**
+     * Get the journal shared by the whole game
+     *
+     * @return the journal
+     */
+    public static EventJournal global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Record an event, if its category's sampling picks it
+     *
+     * @param category the kind of event
+     * @param a        the event's int, as described by its category
+     * @param b        the event's long, as described by its category
+     */
+    public void record(JournalCategory category, int a, long b) {
+        var index = category.ordinal();
+        var rate = rates[index];
+        if (rate == 0) return;
+        if (rate > 1 && ++seen[index] % rate != 0) return;
+
+        var sequence = next.getAndIncrement();
+        var slot = (int) (sequence & mask) * SLOT;
+        slots.setOpaque(slot, 0L);
+        VarHandle.releaseFence();
+        slots.setOpaque(slot + 1, System.nanoTime());
+        slots.setOpaque(slot + 2, (long) index << 32 | (a & 0xFFFFFFFFL));
+        slots.setOpaque(slot + 3, b);
+        slots.setRelease(slot, sequence + 1);
+    }
+
+    /**
+     * Pass every complete event recorded since the last drain to a sink. Stops early at an event still being written.
+     *
+     * @param sink where to send the events
+     * @return the number of events passed to the sink
+     */
+    public synchronized int drain(JournalSink sink) {
+        var end = next.get();
+        var capacity = mask + 1L;
+        if (end - drained > capacity) {
+            sink.dropped(end - capacity - drained);
+            drained = end - capacity;
+        }
+
+        var count = 0;
+        while (drained < end) {
+            var slot = (int) (drained & mask) * SLOT;
+            var published = slots.getAcquire(slot);
+            if (published != drained + 1) {
+                //not finished yet, so try again next drain
+                if (published <= drained) break;
+                //already overwritten by a later event
+                sink.dropped(1);
+                drained++;
+                continue;
+            }
+            var time = slots.getOpaque(slot + 1);
+            var header = slots.getOpaque(slot + 2);
+            var b = slots.getOpaque(slot + 3);
+            VarHandle.acquireFence();
+            if (slots.getOpaque(slot) != published) {
+                sink.dropped(1);
+                drained++;
+                continue;
+            }
+            sink.event(drained, time, CATEGORIES[(int) (header >>> 32)], (int) header, b);
+            drained++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Start a background thread draining events to a sink, replacing any already running
+     *
+     * @param sink where to send the events
+     */
+    public synchronized void startDraining(JournalSink sink) {
+        stopDraining();
+        var thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (drain(sink) == 0) LockSupport.parkNanos(DRAIN_INTERVAL);
+            }
+            drain(sink);
+        }, "journal-drain");
+        thread.setDaemon(true);
+        thread.start();
+        drainer = thread;
+    }
+
+    /**
+     * Stop the background drain, if running. Events recorded before the drain finishes are still passed to its sink.
+     */
+    public synchronized void stopDraining() {
+        if (drainer == null) return;
+        drainer.interrupt();
+        drainer = null;
+    }
+
+    /**
+     * Set how often events of a category are recorded
+     *
+     * @param category the category
+     * @param rate     record one event in this many, or none if 0
+     */
+    public synchronized void setRate(JournalCategory category, int rate) {
+        if (rate < 0) throw new IllegalArgumentException("Sampling rate must not be negative: " + rate);
+        var updated = rates.clone();
+        updated[category.ordinal()] = rate;
+        rates = updated;
+    }
+
+    /**
+     * Get how often events of a category are recorded
+     *
+     * @param category the category
+     * @return one event in this many, or 0 if none
+     */
+    public int getRate(JournalCategory category) {
+        return rates[category.ordinal()];
+    }
+
+    /**
+     * Stop recording events of every category
+     */
+    public synchronized void disable() {
+        rates = new int[CATEGORIES.length];
+    }
+
+    /**
+     * Record every category at its default rate
+     */
+    public synchronized void resetRates() {
+        var updated = new int[CATEGORIES.length];
+        for (var category : CATEGORIES) {
+            updated[category.ordinal()] = category.getDefaultRate();
+        }
+        rates = updated;
+        Arrays.fill(seen, 0);
+    }
+
+    /**
+     * Get the number of events recorded so far, including any overwritten
+     *
+     * @return number of events
+     */
+    public long getRecorded() {
+        return next.get();
+    }
+
+    /**
+     * Pack a piece number and rotation into an event's int
+     *
+     * @param piece    piece number
+     * @param rotation rotation
+     * @return the piece code
+     */
+    public static int piece(int piece, int rotation) {
+        return piece << 2 | rotation;
+    }
+
+    /**
+     * Pack a cell's column and row into an event's long
+     *
+     * @param x column
+     * @param y row
+     * @return the cell
+     */
+    public static long cell(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    public static int cellX(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    public static int cellY(long cell) {
+        return (int) cell;
+    }
+
+    /**
+     * Pack the first 8 characters of a message into an event's long, one byte each
+     *
+     * @param message the message
+     * @return the characters
+     */
+    public static long prefix(String message) {
+        var prefix = 0L;
+        for (var i = 0; i < 8; i++) {
+            var c = i < message.length() ? message.charAt(i) & 0xFF : 0;
+            prefix = prefix << 8 | c;
+        }
+        return prefix;
+    }
+}
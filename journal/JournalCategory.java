@@ -0,0 +1,85 @@
+package uk.ac.soton.comp1206.journal;
+
+/**
+ * The kinds of event recorded in the EventJournal. Each event carries an int and a long, whose meaning depends on its
+ * category, and each category has its own default sampling rate.
+ */
+public enum JournalCategory {
+
+    /**
+     * A piece placed on the grid. The int is the piece code (see EventJournal.piece), the long the cell it was centred on
+     * (see EventJournal.cell).
+     */
+    PLACEMENT(1),
+
+    /**
+     * A piece that did not fit. The int is the piece code, the long the first block in the way. Off by default, as bots
+     * check thousands of placements a move.
+     */
+    CONFLICT(0),
+
+    /**
+     * Lines cleared after a placement. The int is the number of lines, the long the number of blocks.
+     */
+    LINE_CLEAR(1),
+
+    /**
+     * A life lost. The int is the lives left, or -1 when the game ends; the long is 1 if no piece could be played and 0
+     * if the timer ran out.
+     */
+    LIFE(1),
+
+    /**
+     * A message sent to the server. The int is its length, the long its first 8 characters as ASCII bytes.
+     */
+    NETWORK_SEND(1),
+
+    /**
+     * A message received from the server, recorded as for NETWORK_SEND.
+     */
+    NETWORK_RECEIVE(1);
+
+    /**
+     * Record one event in this many by default, or none if 0
+     */
+    private final int defaultRate;
+
+    JournalCategory(int defaultRate) {
+        this.defaultRate = defaultRate;
+    }
+
+    public int getDefaultRate() {
+        return defaultRate;
+    }
+
+    /**
+     * Describe an event of this category in words
+     *
+     * @param a the event's int
+     * @param b the event's long
+     * @return the description
+     */
+    public String describe(int a, long b) {
+        return switch (this) {
+            case PLACEMENT -> "placed piece " + (a >>> 2) + " rotation " + (a & 3) + " at " + cellText(b);
+            case CONFLICT -> "piece " + (a >>> 2) + " rotation " + (a & 3) + " blocked at " + cellText(b);
+            case LINE_CLEAR -> "cleared " + a + " lines, " + b + " blocks";
+            case LIFE -> a < 0 ? "game over" : "life lost, " + a + " left" + (b != 0 ? " (no legal move)" : "");
+            case NETWORK_SEND -> "sent " + a + " chars: " + prefixText(a, b);
+            case NETWORK_RECEIVE -> "received " + a + " chars: " + prefixText(a, b);
+        };
+    }
+
+    private static String cellText(long cell) {
+        return EventJournal.cellX(cell) + "," + EventJournal.cellY(cell);
+    }
+
+    private static String prefixText(int length, long prefix) {
+        var text = new StringBuilder();
+        for (var i = 0; i < Math.min(length, 8); i++) {
+            text.append((char) ((prefix >>> (56 - 8 * i)) & 0xFF));
+        }
+        if (length > 8) text.append("...");
+        return text.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package uk.ac.soton.comp1206.journal;
+
+/**
+ * Receives the events drained from an EventJournal, in the order they were recorded
+ */
+public interface JournalSink {
+
+    /**
+     * Handle one event
+     *
+     * @param sequence the event's position in the journal, counting from 0
+     * @param time     System.nanoTime when it was recorded
+     * @param category the kind of event
+     * @param a        the event's int, as described by its category
+     * @param b        the event's long, as described by its category
+     */
+    void event(long sequence, long time, JournalCategory category, int a, long b);
+
+    /**
+     * Handle events that were overwritten before they could be drained
+     *
+     * @param count number of events lost
+     */
+    default void dropped(long count) {
+    }
+}
@@ -0,0 +1,24 @@
+package uk.ac.soton.comp1206.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes journal events to log4j at debug level, described in words
+ */
+public class Log4jJournalSink implements JournalSink {
+
+    private static final Logger logger = LogManager.getLogger(EventJournal.class);
+
+    @Override
+    public void event(long sequence, long time, JournalCategory category, int a, long b) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("#{} {}: {}", sequence, category, category.describe(a, b));
+        }
+    }
+
+    @Override
+    public void dropped(long count) {
+        logger.warn("Journal overran, {} events lost", count);
+    }
+}
@@ -5,6 +5,8 @@ import javafx.scene.control.Alert;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
+import uk.ac.soton.comp1206.journal.EventJournal;
+import uk.ac.soton.comp1206.journal.JournalCategory;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -87,7 +89,7 @@ public class Communicator {
      * @param message Message to send
      */
     public void send(String message) {
-        logger.info("Sending message: " + message);
+        EventJournal.global().record(JournalCategory.NETWORK_SEND, message.length(), EventJournal.prefix(message));
 
         ws.sendText(message);
     }
@@ -113,7 +115,7 @@ public class Communicator {
      * @param message the message that was received
      */
     private void receive(WebSocket websocket, String message) {
-        logger.info("Received: " + message);
+        EventJournal.global().record(JournalCategory.NETWORK_RECEIVE, message.length(), EventJournal.prefix(message));
 
         for(CommunicationsListener handler : handlers) {
             handler.receiveCommunication(message);
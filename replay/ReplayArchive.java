@@ -0,0 +1,233 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.MoveLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Reads a replay archive written by ReplayArchiveWriter through memory-mapped buffers, so games are decoded straight
+ * from the file rather than loaded onto the heap.
+ *
+ * The file is mapped in segments of up to 1GB, each holding whole games. Jumping to a move decodes the nearest
+ * keyframe before it and then plays the few moves after that. Reading is safe from many threads at once.
+ */
+public class ReplayArchive implements Closeable {
+
+    /**
+     * The largest segment of the file mapped at once
+     */
+    private static final long MAX_SEGMENT = 1L << 30;
+
+    private final FileChannel channel;
+
+    /**
+     * The mapped segments of the file, and where each starts
+     */
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentStart;
+
+    /**
+     * For each game, the segment holding it, where it starts in the file, and its length
+     */
+    private final int[] gameSegment;
+    private final long[] gameOffsets;
+    private final int[] gameLength;
+
+    /**
+     * Open an archive for reading
+     *
+     * @param path the archive
+     * @return the open archive
+     * @throws IOException if the file cannot be read or is not a replay archive
+     */
+    public static ReplayArchive open(Path path) throws IOException {
+        return new ReplayArchive(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    private ReplayArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        var size = channel.size();
+        if (size < ReplayFormat.HEADER_SIZE + ReplayFormat.FOOTER_SIZE) {
+            throw new IOException("Not a replay archive: too short");
+        }
+        var header = read(0, ReplayFormat.HEADER_SIZE);
+        if (header.getInt() != ReplayFormat.MAGIC || header.getInt() != ReplayFormat.VERSION) {
+            throw new IOException("Not a replay archive, or an unsupported version");
+        }
+        var footer = read(size - ReplayFormat.FOOTER_SIZE, ReplayFormat.FOOTER_SIZE);
+        var indexOffset = footer.getLong();
+        var games = footer.getInt();
+        if (footer.getInt() != ReplayFormat.MAGIC) {
+            throw new IOException("Replay archive was not closed properly");
+        }
+
+        //the index is the only part of the archive held on the heap
+        var index = read(indexOffset, games * 8);
+        gameOffsets = new long[games];
+        gameLength = new int[games];
+        gameSegment = new int[games];
+        for (var game = 0; game < games; game++) {
+            gameOffsets[game] = index.getLong();
+        }
+
+        //group whole games into segments to map
+        var maps = new ArrayList<MappedByteBuffer>();
+        var starts = new ArrayList<Long>();
+        var start = -1L;
+        for (var game = 0; game < games; game++) {
+            var end = game + 1 < games ? gameOffsets[game + 1] : indexOffset;
+            gameLength[game] = (int) (end - gameOffsets[game]);
+            if (start < 0 || end - start > MAX_SEGMENT) {
+                if (start >= 0) maps.add(channel.map(FileChannel.MapMode.READ_ONLY, start, gameOffsets[game] - start));
+                start = gameOffsets[game];
+                starts.add(start);
+            }
+            gameSegment[game] = starts.size() - 1;
+        }
+        if (start >= 0) maps.add(channel.map(FileChannel.MapMode.READ_ONLY, start, indexOffset - start));
+        segments = maps.toArray(new MappedByteBuffer[0]);
+        segmentStart = starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Replay archive is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Get a game's block as a buffer of its own, so concurrent readers do not share a position
+     */
+    private ByteBuffer block(int game) {
+        var segment = gameSegment[game];
+        return segments[segment].slice((int) (gameOffsets[game] - segmentStart[segment]), gameLength[game]);
+    }
+
+    /**
+     * Get the number of games in the archive
+     *
+     * @return number of games
+     */
+    public int getGameCount() {
+        return gameOffsets.length;
+    }
+
+    public int getCols(int game) {
+        return block(game).getInt(0);
+    }
+
+    public int getRows(int game) {
+        return block(game).getInt(4);
+    }
+
+    public long getSeed(int game) {
+        return block(game).getLong(8);
+    }
+
+    public int getMoveCount(int game) {
+        return block(game).getInt(16);
+    }
+
+    /**
+     * Check whether a game's pieces were dealt from bags
+     *
+     * @param game game index
+     * @return true if dealt from bags, false if independently at random
+     */
+    public boolean isBagMode(int game) {
+        return (block(game).getInt(28) & ReplayFormat.FLAG_BAG) != 0;
+    }
+
+    /**
+     * Get one move of a game
+     *
+     * @param game game index
+     * @param move move index, below getMoveCount(game)
+     * @return the move, packed as in MoveLog
+     */
+    public int getMove(int game, int move) {
+        var block = block(game);
+        checkMove(block, move, block.getInt(16) - 1);
+        var interval = block.getInt(20);
+        var moves = movesAt(block, move / interval);
+        for (var i = move - move % interval; i < move; i++) {
+            ReplayFormat.readMove(moves);
+        }
+        return ReplayFormat.readMove(moves);
+    }
+
+    /**
+     * Get all the moves of a game
+     *
+     * @param game game index
+     * @return the moves
+     */
+    public MoveLog getMoveLog(int game) {
+        var block = block(game);
+        var count = block.getInt(16);
+        var moves = movesAt(block, 0);
+        var log = new MoveLog();
+        for (var i = 0; i < count; i++) {
+            log.add(ReplayFormat.readMove(moves));
+        }
+        return log;
+    }
+
+    /**
+     * Get a game as it was after the given number of moves. The engine's move log only holds the moves played after
+     * the keyframe it started from.
+     *
+     * @param game  game index
+     * @param moves number of moves played, up to getMoveCount(game)
+     * @return a new engine in that state
+     */
+    public GameEngine seek(int game, int moves) {
+        var block = block(game);
+        checkMove(block, moves, block.getInt(16));
+        var interval = block.getInt(20);
+        var keyframe = moves / interval;
+
+        var engine = new GameEngine(block.getInt(0), block.getInt(4), block.getLong(8));
+        engine.setBagMode((block.getInt(28) & ReplayFormat.FLAG_BAG) != 0);
+        engine.readState(block.position(block.getInt(ReplayFormat.GAME_HEADER_SIZE + keyframe * 8 + 4)));
+
+        var stream = movesAt(block(game), keyframe);
+        for (var i = keyframe * interval; i < moves; i++) {
+            MoveLog.apply(engine, ReplayFormat.readMove(stream), i);
+        }
+        return engine;
+    }
+
+    /**
+     * Get the move stream of a game, positioned at the first move after a keyframe
+     */
+    private ByteBuffer movesAt(ByteBuffer block, int keyframe) {
+        var keyframes = block.getInt(24);
+        var streamStart = ReplayFormat.GAME_HEADER_SIZE + keyframes * 8 + 4;
+        var moveOffset = block.getInt(ReplayFormat.GAME_HEADER_SIZE + keyframe * 8);
+        return block.position(streamStart + moveOffset);
+    }
+
+    private static void checkMove(ByteBuffer block, int move, int last) {
+        if (move < 0 || move > last) {
+            throw new IndexOutOfBoundsException("No such move: " + move);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
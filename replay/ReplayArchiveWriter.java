@@ -0,0 +1,181 @@
+package uk.ac.soton.comp1206.replay;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.MoveLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes games into a replay archive, one after another, for reading back with ReplayArchive.
+ *
+ * Each game is played again from its seed and move log as it is appended, so that a keyframe of the full game state
+ * can be stored every few moves. The index of games is written when the writer is closed.
+ */
+public class ReplayArchiveWriter implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(ReplayArchiveWriter.class);
+
+    /**
+     * The default number of moves between keyframes
+     */
+    public static final int DEFAULT_INTERVAL = 32;
+
+    private final FileChannel channel;
+
+    /**
+     * The number of moves between keyframes
+     */
+    private final int interval;
+
+    /**
+     * The offset of each game block written so far
+     */
+    private long[] gameOffsets = new long[16];
+    private int games = 0;
+
+    /**
+     * Where the next game block will be written
+     */
+    private long position;
+
+    /**
+     * Create a new archive, replacing any file already at the path, with the default keyframe interval
+     *
+     * @param path where to write the archive
+     * @throws IOException if the file cannot be opened
+     */
+    public ReplayArchiveWriter(Path path) throws IOException {
+        this(path, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Create a new archive, replacing any file already at the path
+     *
+     * @param path     where to write the archive
+     * @param interval the number of moves between keyframes
+     * @throws IOException if the file cannot be opened
+     */
+    public ReplayArchiveWriter(Path path, int interval) throws IOException {
+        if (interval < 1) throw new IllegalArgumentException("Keyframe interval must be at least 1: " + interval);
+        this.interval = interval;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+
+        var header = ByteBuffer.allocate(ReplayFormat.HEADER_SIZE);
+        header.putInt(ReplayFormat.MAGIC);
+        header.putInt(ReplayFormat.VERSION);
+        write(header.flip());
+    }
+
+    /**
+     * Append a game whose pieces were dealt independently at random to the archive
+     *
+     * @param cols number of columns of the game's board
+     * @param rows number of rows of the game's board
+     * @param seed seed of the game's piece stream
+     * @param log  the moves of the game
+     * @return the index of the game in the archive
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if the log does not match the seed
+     */
+    public int append(int cols, int rows, long seed, MoveLog log) throws IOException {
+        return append(cols, rows, seed, false, log);
+    }
+
+    /**
+     * Append a game to the archive
+     *
+     * @param cols number of columns of the game's board
+     * @param rows number of rows of the game's board
+     * @param seed seed of the game's piece stream
+     * @param bag  true if the game's pieces were dealt from bags
+     * @param log  the moves of the game
+     * @return the index of the game in the archive
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if the log does not match the seed
+     */
+    public int append(int cols, int rows, long seed, boolean bag, MoveLog log) throws IOException {
+        var engine = new GameEngine(cols, rows, seed);
+        engine.setBagMode(bag);
+        engine.initialiseGame();
+
+        //play the game again, taking a keyframe every interval moves
+        var moveCount = log.size();
+        var keyframes = moveCount / interval + 1;
+        var stateSize = engine.getStateSize();
+        var states = ByteBuffer.allocate(keyframes * stateSize);
+        var moveOffsets = new int[keyframes];
+        var moves = new ByteArrayOutputStream();
+        for (var i = 0; i < moveCount; i++) {
+            if (i % interval == 0) {
+                moveOffsets[i / interval] = moves.size();
+                engine.writeState(states);
+            }
+            MoveLog.apply(engine, log.get(i), i);
+            ReplayFormat.writeMove(moves, log.get(i));
+        }
+        if (moveCount % interval == 0) {
+            moveOffsets[keyframes - 1] = moves.size();
+            engine.writeState(states);
+        }
+
+        var statesStart = ReplayFormat.GAME_HEADER_SIZE + keyframes * 8 + 4 + moves.size();
+        var block = ByteBuffer.allocate(statesStart + states.capacity());
+        block.putInt(cols);
+        block.putInt(rows);
+        block.putLong(seed);
+        block.putInt(moveCount);
+        block.putInt(interval);
+        block.putInt(keyframes);
+        block.putInt(bag ? ReplayFormat.FLAG_BAG : 0);
+        for (var k = 0; k < keyframes; k++) {
+            block.putInt(moveOffsets[k]);
+            block.putInt(statesStart + k * stateSize);
+        }
+        block.putInt(moves.size());
+        block.put(moves.toByteArray());
+        block.put(states.flip());
+
+        if (games == gameOffsets.length) {
+            gameOffsets = Arrays.copyOf(gameOffsets, games * 2);
+        }
+        gameOffsets[games] = position;
+        write(block.flip());
+        return games++;
+    }
+
+    /**
+     * Write the index and footer and close the file
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        var indexOffset = position;
+        var index = ByteBuffer.allocate(games * 8 + ReplayFormat.FOOTER_SIZE);
+        for (var i = 0; i < games; i++) {
+            index.putLong(gameOffsets[i]);
+        }
+        index.putLong(indexOffset);
+        index.putInt(games);
+        index.putInt(ReplayFormat.MAGIC);
+        write(index.flip());
+        channel.close();
+        logger.info("Wrote {} games to replay archive", games);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
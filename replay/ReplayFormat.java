@@ -0,0 +1,93 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.MoveLog;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encodings shared by the replay archive writer and reader.
+ *
+ * An archive is a header, then each game's block back to back, then an index and a footer:
+ * <pre>
+ * header:  int MAGIC, int VERSION
+ * game:    int cols, int rows, long seed, int moves, int interval, int keyframes, int flags
+ *          keyframes x (int offset of the keyframe's first move in the move stream, int offset of the keyframe state)
+ *          int length of the move stream, then the move stream
+ *          the keyframe states, each written by GameEngine.writeState
+ * index:   long offset of each game block
+ * footer:  long offset of the index, int number of games, int MAGIC
+ * </pre>
+ * The flags say how the game's pieces were dealt: FLAG_BAG if from bags rather than independently at random.
+ * Offsets inside a game block are relative to the start of the block. Keyframe k holds the state after k * interval
+ * moves, so reaching any move takes one keyframe and fewer than interval moves.
+ *
+ * Each move is a byte holding its type (2 bits), piece number (4 bits) and rotation (2 bits), followed for a placement
+ * by the column and row as varints.
+ */
+class ReplayFormat {
+
+    static final int MAGIC = 0x54524541; // "TREA"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 16;
+    static final int GAME_HEADER_SIZE = 32;
+
+    /**
+     * Set in a game's flags if its pieces were dealt from bags
+     */
+    static final int FLAG_BAG = 1;
+
+    private ReplayFormat() {
+    }
+
+    /**
+     * Append a move from a MoveLog to a move stream
+     *
+     * @param out  the move stream
+     * @param move the packed move
+     */
+    static void writeMove(ByteArrayOutputStream out, int move) {
+        var type = MoveLog.typeOf(move);
+        out.write(type << 6 | MoveLog.pieceOf(move) << 2 | MoveLog.rotationOf(move));
+        if (type == MoveLog.PLACE) {
+            writeVarint(out, MoveLog.xOf(move));
+            writeVarint(out, MoveLog.yOf(move));
+        }
+    }
+
+    /**
+     * Read the next move from a move stream, in the form MoveLog uses
+     *
+     * @param in the move stream, positioned at the move
+     * @return the packed move
+     */
+    static int readMove(ByteBuffer in) {
+        var first = in.get() & 0xFF;
+        var type = first >>> 6;
+        var x = 0;
+        var y = 0;
+        if (type == MoveLog.PLACE) {
+            x = readVarint(in);
+            y = readVarint(in);
+        }
+        return MoveLog.pack(type, (first >>> 2) & 0xF, first & 0x3, x, y);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        var value = 0;
+        for (var shift = 0; ; shift += 7) {
+            var b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package uk.ac.soton.comp1206.save;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The Autosave keeps a save file up to date as a game is played, so that after a crash or a quit the game can be
+ * loaded with SaveGame.load and carried on from where it was.
+ *
+ * The file is written as a snapshot of the engine, and after that each move only appends its four bytes. Once enough
+ * moves have been appended the file is compacted by writing a fresh snapshot in its place. Rotating a piece is not a
+ * move, so a rotation is only kept by the next snapshot; suspend takes one straight away, with the time left on the
+ * timer.
+ *
+ * record, suspend and discard are called on the thread that owns the engine, and only copy what needs writing. The
+ * writing itself is done in order on a background thread of the autosave's own, so the game never waits for the disk.
+ * Appended moves are not forced to the disk, so they survive the game crashing but not the machine.
+ */
+public class Autosave implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(Autosave.class);
+
+    /**
+     * The default number of moves appended before the file is compacted
+     */
+    public static final int DEFAULT_INTERVAL = 64;
+
+    private final Path path;
+
+    /**
+     * The number of moves appended before the file is compacted
+     */
+    private final int interval;
+
+    /**
+     * Writes to the file, one change at a time
+     */
+    private final ExecutorService writer;
+
+    /**
+     * The number of moves in the engine's log that the file holds, or -1 if it needs a fresh snapshot. Owner thread
+     * only.
+     */
+    private int saved = -1;
+
+    /**
+     * The number of moves in the engine's log when the last snapshot was taken. Owner thread only.
+     */
+    private int snapshotAt = 0;
+
+    /**
+     * The file, open for appending moves. Writer thread only.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * Create a new autosave, compacting with the default interval
+     *
+     * @param path where to keep the save file
+     */
+    public Autosave(Path path) {
+        this(path, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Create a new autosave
+     *
+     * @param path     where to keep the save file
+     * @param interval the number of moves appended before the file is compacted
+     */
+    public Autosave(Path path, int interval) {
+        if (interval < 1) throw new IllegalArgumentException("Compaction interval must be at least 1: " + interval);
+        this.path = path;
+        this.interval = interval;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            var thread = new Thread(task, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Bring the file up to date after the engine has changed, appending the moves made since the last call or taking a
+     * snapshot if it is due. Called on the thread that owns the engine.
+     *
+     * @param engine         the engine
+     * @param timerRemaining milliseconds left on the timer, or 0 for the full delay
+     */
+    public void record(GameEngine engine, int timerRemaining) {
+        var log = engine.getMoveLog();
+        var moves = log.size();
+        if (saved < 0 || moves < saved || moves - snapshotAt >= interval) {
+            suspend(engine, timerRemaining);
+            return;
+        }
+        if (moves == saved) return;
+
+        var delta = ByteBuffer.allocate((moves - saved) * 4);
+        for (var i = saved; i < moves; i++) {
+            delta.putInt(log.get(i));
+        }
+        saved = moves;
+        delta.flip();
+        writer.execute(() -> append(delta));
+    }
+
+    /**
+     * Write a snapshot of the engine in place of the file. Called on the thread that owns the engine.
+     *
+     * @param engine         the engine
+     * @param timerRemaining milliseconds left on the timer, or 0 for the full delay
+     */
+    public void suspend(GameEngine engine, int timerRemaining) {
+        var snapshot = ByteBuffer.allocate(SaveGame.sizeOf(engine));
+        SaveGame.write(snapshot, engine, timerRemaining);
+        snapshot.flip();
+        saved = snapshotAt = engine.getMoveLog().size();
+        writer.execute(() -> compact(snapshot));
+    }
+
+    /**
+     * Delete the file, for example once the game is over. A later record starts it again with a snapshot.
+     */
+    public void discard() {
+        saved = -1;
+        writer.execute(() -> {
+            try {
+                closeChannel();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.error("Unable to delete autosave {}: {}", path, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Wait until everything recorded so far has been written
+     */
+    public void flush() {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Close the file once everything recorded so far has been written, without waiting for it. Nothing more can be
+     * recorded afterwards.
+     */
+    @Override
+    public void close() {
+        writer.execute(this::closeChannel);
+        writer.shutdown();
+    }
+
+    private void append(ByteBuffer delta) {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (delta.hasRemaining()) {
+                channel.write(delta);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to append to autosave {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void compact(ByteBuffer snapshot) {
+        try {
+            closeChannel();
+            SaveGame.replace(path, snapshot);
+        } catch (IOException e) {
+            logger.error("Unable to write autosave {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Unable to close autosave {}: {}", path, e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Get where the save file is kept
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+}
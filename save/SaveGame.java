@@ -0,0 +1,162 @@
+package uk.ac.soton.comp1206.save;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.MoveLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A suspended game: the full state of its engine and how long was left on the timer, read from a save file.
+ *
+ * A save file is a snapshot followed by any number of moves made since it:
+ * <pre>
+ * snapshot: int MAGIC, int VERSION, int cols, int rows, long seed, byte bag mode, int timer left in milliseconds
+ *           the state, as written by GameEngine.writeState
+ * moves:    int per move, as packed by MoveLog
+ * </pre>
+ * A snapshot alone is a few dozen bytes for a normal board and is written with a single call. The moves are what an
+ * Autosave appends between snapshots; a move cut short by a crash is ignored.
+ */
+public final class SaveGame {
+
+    static final int MAGIC = 0x54525356; // "TRSV"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 29;
+
+    private final GameEngine engine;
+    private final int timerRemaining;
+
+    private SaveGame(GameEngine engine, int timerRemaining) {
+        this.engine = engine;
+        this.timerRemaining = timerRemaining;
+    }
+
+    /**
+     * Get the number of bytes a snapshot of the engine takes
+     *
+     * @param engine the engine
+     * @return size of the snapshot in bytes
+     */
+    public static int sizeOf(GameEngine engine) {
+        return HEADER_SIZE + engine.getStateSize();
+    }
+
+    /**
+     * Write a snapshot of an engine
+     *
+     * @param buffer         where to write, with at least sizeOf(engine) bytes remaining
+     * @param engine         the engine
+     * @param timerRemaining milliseconds left on the timer, or 0 for the full delay
+     */
+    public static void write(ByteBuffer buffer, GameEngine engine, int timerRemaining) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(engine.getCols());
+        buffer.putInt(engine.getRows());
+        buffer.putLong(engine.getSeed());
+        buffer.put((byte) (engine.isBagMode() ? 1 : 0));
+        buffer.putInt(timerRemaining);
+        engine.writeState(buffer);
+    }
+
+    /**
+     * Read a save written as a snapshot followed by moves
+     *
+     * @param buffer where to read from
+     * @return the saved game
+     * @throws IOException if the buffer does not hold a save, or its moves do not match its snapshot
+     */
+    public static SaveGame read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a save file, or an unsupported version");
+        }
+        var cols = buffer.getInt();
+        var rows = buffer.getInt();
+        var engine = new GameEngine(cols, rows, buffer.getLong());
+        engine.setBagMode(buffer.get() != 0);
+        var timerRemaining = buffer.getInt();
+        if (buffer.remaining() < engine.getStateSize()) {
+            throw new IOException("Save file is cut short");
+        }
+        engine.readState(buffer);
+
+        //play on any moves made since the snapshot; the timer was reset by the last of them
+        var moves = buffer.remaining() / 4;
+        for (var i = 0; i < moves; i++) {
+            try {
+                MoveLog.apply(engine, buffer.getInt(), i);
+            } catch (IllegalStateException e) {
+                throw new IOException("Save file moves do not match its snapshot", e);
+            }
+        }
+        return new SaveGame(engine, moves > 0 ? 0 : timerRemaining);
+    }
+
+    /**
+     * Save a snapshot of an engine to a file, replacing it in one step so a crash never leaves half a save
+     *
+     * @param path           where to save
+     * @param engine         the engine
+     * @param timerRemaining milliseconds left on the timer, or 0 for the full delay
+     * @throws IOException if writing fails
+     */
+    public static void save(Path path, GameEngine engine, int timerRemaining) throws IOException {
+        var buffer = ByteBuffer.allocate(sizeOf(engine));
+        write(buffer, engine, timerRemaining);
+        replace(path, buffer.flip());
+    }
+
+    /**
+     * Write a whole file through a temporary file next to it, then move it into place
+     *
+     * @param path     where to write
+     * @param contents what to write
+     * @throws IOException if writing fails
+     */
+    static void replace(Path path, ByteBuffer contents) throws IOException {
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a save file
+     *
+     * @param path the file
+     * @return the saved game, or null if there is no file
+     * @throws IOException if the file cannot be read or is not a save
+     */
+    public static SaveGame load(Path path) throws IOException {
+        if (!Files.exists(path)) return null;
+        return read(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    /**
+     * Get the engine, in the state it was saved in. Its move log only holds moves made after the last snapshot.
+     *
+     * @return the engine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Get how long was left on the timer
+     *
+     * @return milliseconds, or 0 for the full delay
+     */
+    public int getTimerRemaining() {
+        return timerRemaining;
+    }
+}
@@ -1,5 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.Interpolator;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
@@ -29,12 +30,19 @@ import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.event.HighScoreListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.game.CommandQueue;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.GameSnapshot;
+import uk.ac.soton.comp1206.game.GameStats;
 import uk.ac.soton.comp1206.game.MultiMedia;
+import uk.ac.soton.comp1206.save.Autosave;
+import uk.ac.soton.comp1206.save.SaveGame;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.List;
 
@@ -54,9 +62,37 @@ public class ChallengeScene extends BaseScene {
     protected HBox timer;
 
     private GameBoard board;
+    private Label scoreLabel;
+    private Label livesLabel;
+    private Label levelLabel;
+    private Label multLable;
+    /**
+     * The statistics the labels show, or null before the first
+     */
+    private GameStats stats = null;
     private int x;
     private int y;
 
+    /**
+     * Input waiting to be sent to the game, drained once per frame so a burst of key presses or clicks becomes a single
+     * batch and a single UI update
+     */
+    private final CommandQueue commands = new CommandQueue();
+    /**
+     * Set when the keyboard cursor has moved since the last frame, so the hovered tile is only repainted once
+     */
+    private boolean cursorMoved = false;
+    private AnimationTimer input;
+
+    /**
+     * Where the game in progress is saved, so it can be resumed after quitting or a crash
+     */
+    private static final Path AUTOSAVE = Path.of("autosave.dat");
+    /**
+     * The game loaded from the autosave, or null if this is a new game
+     */
+    private SaveGame saved = null;
+
     /**
      * Create a new Single Player challenge scene
      * @param gameWindow the Game Window
@@ -102,8 +138,7 @@ public class ChallengeScene extends BaseScene {
         scoreBoard.setAlignment(Pos.TOP_LEFT);
         scoreBoard.setTranslateX(30);
 
-        Label scoreLabel = new Label();
-        scoreLabel.textProperty().bind(game.scoreProperty().asString("Score: %d"));
+        scoreLabel = new Label("Score: 0");
         scoreLabel.setFont(new Font(42));
         scoreLabel.getStyleClass().add("smalltitle");
 
@@ -124,8 +159,7 @@ public class ChallengeScene extends BaseScene {
         livesBoard.setAlignment(Pos.TOP_RIGHT);
         livesBoard.setTranslateX(-10);
 
-        Label livesLabel = new Label("Lives Left: 3");
-        livesLabel.textProperty().bind(game.livesProperty().asString("Lives: %d"));
+        livesLabel = new Label("Lives: 3");
         livesLabel.setFont(new Font(42));
         livesLabel.getStyleClass().add("smalltitle");
 
@@ -149,8 +183,7 @@ public class ChallengeScene extends BaseScene {
         VBox levelsBoard = new VBox();
         levelsBoard.setAlignment(Pos.TOP_RIGHT);
         //LEVELS
-        Label levelLabel = new Label();
-        levelLabel.textProperty().bind(game.levelProperty().asString("Level: %d"));
+        levelLabel = new Label("Level: 0");
         levelLabel.setFont(new Font(42));
         levelLabel.getStyleClass().add("heading");
 
@@ -159,8 +192,7 @@ public class ChallengeScene extends BaseScene {
         VBox multBoard = new VBox();
         multBoard.setAlignment(Pos.TOP_RIGHT);
         //MULTIPLIER
-        Label multLable = new Label("multiplier: %d");
-        multLable.textProperty().bind(game.getMultiplierProperty().asString("Multiplier: %d"));
+        multLable = new Label("Multiplier: 1");
         multLable.setFont(new Font(42));
         multLable.getStyleClass().add("heading");
 
@@ -195,7 +227,7 @@ public class ChallengeScene extends BaseScene {
 
         mainPane.setRight(pieceBoards);
 
-        game.setLineClearedListener(board::fadeOut);
+        game.setCellsClearedListener(board::fadeOut);
 
         //TIMER
         // Countdown bar
@@ -207,6 +239,7 @@ public class ChallengeScene extends BaseScene {
         mainPane.setBottom(timer);
         //Handle block on gameboard grid being clicked
         board.setOnBlockClick(this::blockClicked);
+        board.setOnRightClicked(this::rotateRight);
 
     }
     protected void timer(int time) {
@@ -241,7 +274,19 @@ public class ChallengeScene extends BaseScene {
      * @param gameBlock the Game Block that was clocked
      */
     private void blockClicked(GameBlock gameBlock) {
-        game.blockClicked(gameBlock);
+        commands.place(gameBlock.getX(), gameBlock.getY());
+    }
+
+    /**
+     * Send the input queued since the last frame to the game as one batch, and move the hovered tile to the keyboard
+     * cursor if it has moved
+     */
+    private void drainInput() {
+        if (cursorMoved) {
+            cursorMoved = false;
+            board.hoveredTile(board.getBlock(x, y));
+        }
+        game.apply(commands.drain());
     }
     /**
      * Setup the game object and model
@@ -249,12 +294,49 @@ public class ChallengeScene extends BaseScene {
     public void setupGame() {
         logger.info("Starting a new challenge");
 
-        //Start new game
-        game = new Game(5, 5);
+        //Carry on the saved game if there is one, otherwise start a new game
+        try {
+            saved = SaveGame.load(AUTOSAVE);
+        } catch (IOException e) {
+            logger.error("Unable to resume autosave: {}", e.getMessage());
+            saved = null;
+        }
+        game = saved != null ? new Game(saved.getEngine()) : new Game(5, 5);
+        game.setAutosave(new Autosave(AUTOSAVE));
     }
     public void nextPiece(GamePiece piece, GamePiece followingPiece) {
-        currentPieceBoard.showPiece(game.getCurrentPiece());
-        nextPieceBoard.showPiece(game.getFollowingPiece());
+        currentPieceBoard.showPiece(piece);
+        nextPieceBoard.showPiece(followingPiece);
+    }
+
+    /**
+     * Show the pieces in play after each command, so rotations and swaps appear once the game has applied them
+     * @param snapshot the state of the game
+     */
+    public void gameState(GameSnapshot snapshot) {
+        currentPieceBoard.showPiece(snapshot.getCurrentPiece());
+        nextPieceBoard.showPiece(snapshot.getFollowingPiece());
+    }
+
+    /**
+     * updates the labels showing the statistics, only setting the text of those that changed
+     * @param stats - the new statistics
+     */
+    public void gameStats(GameStats stats) {
+        var shown = this.stats;
+        if (shown == null || shown.score() != stats.score()) {
+            scoreLabel.setText("Score: " + stats.score());
+        }
+        if (shown == null || shown.lives() != stats.lives()) {
+            livesLabel.setText("Lives: " + stats.lives());
+        }
+        if (shown == null || shown.level() != stats.level()) {
+            levelLabel.setText("Level: " + stats.level());
+        }
+        if (shown == null || shown.multiplier() != stats.multiplier()) {
+            multLable.setText("Multiplier: " + stats.multiplier());
+        }
+        this.stats = stats;
     }
 
 
@@ -267,20 +349,36 @@ public class ChallengeScene extends BaseScene {
         MultiMedia.playBackgroundMusic("game_start.wav");
         game.setGameLoopListener(this::timer);
         game.setNextPiece(this::nextPiece);
+        game.setGameStateListener(this::gameState);
+        game.setGameStatsListener(this::gameStats);
         game.setGameOverListener(this::gameOver); // Ensure this is called
         game.setHighScoreListener(this::getHighScore);
         logger.debug("Game Over Listener set"); // Debug statement
         addKeyboardListeners();
 
+        //input is applied once per frame rather than in each event handler
+        input = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drainInput();
+            }
+        };
+        input.start();
+
         // Ensure the root element can receive focus and request focus
         scene.getRoot().setFocusTraversable(true);
         scene.getRoot().requestFocus();
 
-        game.start();
+        if (saved != null) {
+            game.resume(saved.getTimerRemaining());
+        } else {
+            game.start();
+        }
     }
 
     private void gameOver() {
         logger.info("Game Over Triggered");
+        input.stop();
         gameWindow.scoreScene(game);
     }
 
@@ -292,35 +390,36 @@ public class ChallengeScene extends BaseScene {
             KeyCode code = event.getCode();
             switch (code) {
                 case ESCAPE:
+                    input.stop();
                     gameWindow.startMenu();
-                    game.stopGame();
+                    game.suspend();
                     break;
                 case UP:
                 case W:
                     if (y > 0) {
                         y--;
-                        board.hoveredTile(board.getBlock(x, y));  //calls hover tile which paints a tile if the keyboard is hovering over it
+                        cursorMoved = true;
                     }
                     break;
                 case DOWN:
                 case S:
                     if (y < game.getRows() - 1) {
                         y++;
-                        board.hoveredTile(board.getBlock(x, y));
+                        cursorMoved = true;
                     }
                     break;
                 case LEFT:
                 case A:
                     if (x > 0) {
                         x--;
-                        board.hoveredTile(board.getBlock(x, y));
+                        cursorMoved = true;
                     }
                     break;
                 case RIGHT:
                 case D:
                     if (x < game.getCols() - 1) {
                         x++;
-                        board.hoveredTile(board.getBlock(x, y));
+                        cursorMoved = true;
                     }
                     break;
                 case ENTER:
@@ -356,24 +455,14 @@ public class ChallengeScene extends BaseScene {
      * method to rotate a block right
      */
     private void rotateRight(){
-        MultiMedia.playAudio("rotate.wav");
-        game.rotateCurrentPiece(1);
-        currentPieceBoard.showPiece(game.getCurrentPiece());
-        logger.info("rotating right");
+        commands.rotate(1);
     }
 
     private void rotateLeft(){
-        MultiMedia.playAudio("rotate.wav");
-        game.rotateCurrentPiece(3);
-        currentPieceBoard.showPiece(game.getCurrentPiece());
-        logger.info("rotating left");
+        commands.rotate(3);
     }
     private void swap(){
-        MultiMedia.playAudio("rotate.wav");
-        game.swapCurrentPiece();
-        currentPieceBoard.showPiece(game.getCurrentPiece());
-        nextPieceBoard.showPiece(game.getFollowingPiece());
-        logger.info("swapping");
+        commands.swap();
     }
     /**
      * Retrieves the highest score from the score list as a string.
@@ -0,0 +1,148 @@
+package uk.ac.soton.comp1206.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many independent game sessions in one JVM, each reached over its own WebSocket connection on the local
+ * machine. Messages are plain text, as the Communicator sends and receives them (see GameSession for the commands).
+ *
+ * Every connection reads and applies its player's commands on its own thread. On Java 21 and later these are virtual
+ * threads, so a waiting session costs a small heap-allocated stack rather than a platform thread, and tens of
+ * thousands of sessions fit on one node. Earlier Java versions fall back to a pool of platform threads, which suits a
+ * few thousand sessions.
+ */
+public class GameServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(GameServer.class);
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final int defaultCols;
+    private final int defaultRows;
+
+    /**
+     * The number of sessions currently connected
+     */
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    /**
+     * Open a server on the loopback address
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param cols board columns for games started without a size
+     * @param rows board rows for games started without a size
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(int port, int cols, int rows) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.executor = newSessionExecutor();
+        this.defaultCols = cols;
+        this.defaultRows = rows;
+    }
+
+    /**
+     * Get an executor that runs each task on a new virtual thread if the running Java has them, otherwise on a pool of
+     * daemon platform threads
+     *
+     * @return the executor
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            var method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads are not available, hosting sessions on platform threads");
+            return Executors.newCachedThreadPool(task -> {
+                var thread = new Thread(null, task, "session", 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Accept connections until the server is closed, starting a session for each
+     */
+    public void run() {
+        logger.info("Game server listening on ws://{}:{}/", serverSocket.getInetAddress().getHostAddress(), getPort());
+        while (running) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                //closed
+                break;
+            } catch (IOException e) {
+                logger.error("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run one connection's session until the player quits or disconnects
+     *
+     * @param socket the connection
+     */
+    private void serve(Socket socket) {
+        try (var connection = new WebSocketConnection(socket)) {
+            if (!connection.handshake()) return;
+            sessions.incrementAndGet();
+            var session = new GameSession(connection, executor, defaultCols, defaultRows);
+            try {
+                String message;
+                while ((message = connection.readMessage()) != null) {
+                    if (!session.handle(message)) {
+                        connection.close(1000, "Goodbye");
+                        break;
+                    }
+                }
+            } finally {
+                session.close();
+                sessions.decrementAndGet();
+            }
+        } catch (IOException e) {
+            logger.debug("Session ended: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the port the server is listening on
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Get the number of sessions currently connected
+     *
+     * @return sessions
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * Stop accepting connections. Sessions already connected carry on until they end.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,197 @@
+package uk.ac.soton.comp1206.server;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.timer.Timeout;
+import uk.ac.soton.comp1206.timer.TimerWheel;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One player's game on the server. Commands from the player's connection and expiries of the piece timer are applied
+ * to a headless GameEngine one at a time, and the results sent back as text messages in the style of the TetrECS
+ * server, a command word followed by its values:
+ *
+ * <pre>
+ * START [cols rows [seed]]  GAME seed cols rows, then STATE, PIECES and DELAY
+ * PLACE x y                 STATE, PIECES and DELAY, or NOPLACE x y if the piece does not fit
+ * ROTATE [n]                PIECES
+ * SWAP                      PIECES
+ * QUIT                      the connection is closed
+ *
+ * STATE score level lives multiplier
+ * PIECES piece rotation following
+ * DELAY milliseconds        until the timer next runs out, when TIMER is sent followed by STATE, PIECES and DELAY
+ * GAMEOVER score            the game has ended; START begins another
+ * ERROR reason              the command was not understood
+ * </pre>
+ *
+ * The timer is a timeout on the shared TimerWheel, and its expiry is handed to the session executor, so waiting
+ * sessions hold no thread at all.
+ */
+class GameSession {
+
+    private final WebSocketConnection connection;
+    private final Executor executor;
+
+    /**
+     * Held while a command or timer expiry is applied, so they never overlap
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private GameEngine engine = null;
+    private Timeout timer = null;
+
+    /**
+     * Board size used when START does not give one
+     */
+    private final int defaultCols;
+    private final int defaultRows;
+
+    GameSession(WebSocketConnection connection, Executor executor, int defaultCols, int defaultRows) {
+        this.connection = connection;
+        this.executor = executor;
+        this.defaultCols = defaultCols;
+        this.defaultRows = defaultRows;
+    }
+
+    /**
+     * Apply one command from the player
+     *
+     * @param message the command
+     * @return false if the session should end
+     * @throws IOException if the reply cannot be sent
+     */
+    boolean handle(String message) throws IOException {
+        var parts = message.trim().split("\\s+");
+        lock.lock();
+        try {
+            switch (parts[0].toUpperCase()) {
+                case "START" -> start(parts);
+                case "PLACE" -> place(parts);
+                case "ROTATE" -> {
+                    if (!playing()) return true;
+                    engine.rotateCurrentPiece(parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+                    sendPieces();
+                }
+                case "SWAP" -> {
+                    if (!playing()) return true;
+                    engine.swapCurrentPiece();
+                    sendPieces();
+                }
+                case "QUIT" -> {
+                    return false;
+                }
+                default -> connection.send("ERROR Unknown command: " + parts[0]);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            connection.send("ERROR Bad command: " + message);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private void start(String[] parts) throws IOException {
+        var cols = parts.length > 2 ? Integer.parseInt(parts[1]) : defaultCols;
+        var rows = parts.length > 2 ? Integer.parseInt(parts[2]) : defaultRows;
+        if (cols < 3 || rows < 3 || cols > 64 || rows > 64) {
+            connection.send("ERROR Board must be from 3x3 to 64x64");
+            return;
+        }
+        cancelTimer();
+        engine = parts.length > 3 ? new GameEngine(cols, rows, Long.parseLong(parts[3])) : new GameEngine(cols, rows);
+        engine.initialiseGame();
+        connection.send("GAME " + engine.getSeed() + " " + cols + " " + rows);
+        afterMove();
+    }
+
+    private void place(String[] parts) throws IOException {
+        if (!playing()) return;
+        var x = Integer.parseInt(parts[1]);
+        var y = Integer.parseInt(parts[2]);
+        if (x < 0 || y < 0 || x >= engine.getCols() || y >= engine.getRows() || !engine.playPiece(x, y)) {
+            connection.send("NOPLACE " + x + " " + y);
+            return;
+        }
+        cancelTimer();
+        afterMove();
+    }
+
+    /**
+     * Run out the piece timer. Called on the session executor.
+     *
+     * @param expired the timeout that ran out, ignored if it has since been replaced
+     */
+    private void timerExpired(Timeout expired) {
+        lock.lock();
+        try {
+            if (expired != timer || engine == null || engine.isGameOver()) return;
+            engine.timerExpired();
+            connection.send("TIMER");
+            afterMove();
+        } catch (IOException e) {
+            //the connection's own thread sees the failure and ends the session
+            connection.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send the new state, then restart the timer, or report the end of the game
+     */
+    private void afterMove() throws IOException {
+        if (engine.isGameOver()) {
+            timer = null;
+            connection.send("GAMEOVER " + engine.getScore());
+            return;
+        }
+        connection.send("STATE " + engine.getScore() + " " + engine.getLevel() + " " + engine.getLives() + " "
+                + engine.getMultiplier());
+        sendPieces();
+        var delay = engine.getTimerDelay();
+        var timeout = new Timeout[1];
+        timeout[0] = TimerWheel.shared().schedule(() -> executor.execute(() -> timerExpired(timeout[0])), delay,
+                TimeUnit.MILLISECONDS);
+        timer = timeout[0];
+        connection.send("DELAY " + delay);
+    }
+
+    private void sendPieces() throws IOException {
+        GamePiece current = engine.getCurrentPiece();
+        connection.send("PIECES " + current.getPiece() + " " + current.getRotation() + " "
+                + engine.getFollowingPiece().getPiece());
+    }
+
+    private boolean playing() throws IOException {
+        if (engine == null || engine.isGameOver()) {
+            connection.send("ERROR No game in progress");
+            return false;
+        }
+        return true;
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * End the session, stopping its timer
+     */
+    void close() {
+        lock.lock();
+        try {
+            cancelTimer();
+            engine = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package uk.ac.soton.comp1206.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The server end of a WebSocket (RFC 6455) over a blocking socket: the opening handshake, then text messages in both
+ * directions. Pings are answered and fragmented messages are reassembled; binary messages are refused.
+ *
+ * One thread reads with readMessage, while any thread may send. Buffers are kept small, as the server holds one
+ * connection per session.
+ */
+class WebSocketConnection implements AutoCloseable {
+
+    /**
+     * Appended to the client's key to prove the handshake was understood
+     */
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * The longest message accepted from a client
+     */
+    private static final int MAX_MESSAGE = 65536;
+
+    private static final int TEXT = 0x1;
+    private static final int BINARY = 0x2;
+    private static final int CLOSE = 0x8;
+    private static final int PING = 0x9;
+    private static final int PONG = 0xA;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * Held while writing a frame, so frames from different threads do not interleave
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private boolean closeSent = false;
+
+    /**
+     * Wrap an accepted socket. Call handshake before anything else.
+     *
+     * @param socket the socket
+     * @throws IOException if the socket's streams cannot be opened
+     */
+    WebSocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), 512);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 512);
+    }
+
+    /**
+     * Read the client's upgrade request and accept it
+     *
+     * @return true if the connection is now a WebSocket, false if the request was refused
+     * @throws IOException if the socket fails
+     */
+    boolean handshake() throws IOException {
+        String key = null;
+        var line = readLine();
+        if (line == null || !line.startsWith("GET ")) {
+            refuse();
+            return false;
+        }
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            var colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if (key == null) {
+            refuse();
+            return false;
+        }
+
+        var response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        return true;
+    }
+
+    private void refuse() throws IOException {
+        out.write("HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private static String accept(String key) {
+        try {
+            var sha1 = MessageDigest.getInstance("SHA-1");
+            var digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform is required to provide SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read a line of the HTTP request, without its line ending
+     *
+     * @return the line, or null at the end of the stream
+     */
+    private String readLine() throws IOException {
+        var line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                var length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+                return line.toString();
+            }
+            if (line.length() > 8192) throw new IOException("Request line too long");
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /**
+     * Wait for the next text message from the client, answering any pings on the way
+     *
+     * @return the message, or null once the client has closed the connection
+     * @throws IOException if the socket fails or the client breaks the protocol
+     */
+    String readMessage() throws IOException {
+        byte[] message = null;
+        var length = 0;
+        while (true) {
+            var first = in.read();
+            if (first == -1) return null;
+            var fin = (first & 0x80) != 0;
+            var opcode = first & 0x0F;
+            var second = readByte();
+            var masked = (second & 0x80) != 0;
+            long size = second & 0x7F;
+            if (size == 126) {
+                size = (readByte() << 8) | readByte();
+            } else if (size == 127) {
+                size = 0;
+                for (var i = 0; i < 8; i++) size = (size << 8) | readByte();
+            }
+            if (!masked) {
+                close(1002, "Client frames must be masked");
+                throw new IOException("Unmasked frame from client");
+            }
+            if (size < 0 || size > MAX_MESSAGE || length + size > MAX_MESSAGE) {
+                close(1009, "Message too big");
+                throw new IOException("Message of " + size + " bytes is too big");
+            }
+            var mask = new byte[4];
+            readFully(mask, 0, 4);
+            var payload = new byte[(int) size];
+            readFully(payload, 0, payload.length);
+            for (var i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+
+            switch (opcode) {
+                case PING -> sendFrame(PONG, payload);
+                case PONG -> {
+                }
+                case CLOSE -> {
+                    close(1000, "");
+                    return null;
+                }
+                case BINARY -> {
+                    close(1003, "Only text messages are supported");
+                    throw new IOException("Binary message from client");
+                }
+                case TEXT, 0x0 -> {
+                    if ((opcode == TEXT) == (message != null)) {
+                        close(1002, "Unexpected continuation");
+                        throw new IOException("Badly fragmented message");
+                    }
+                    if (message == null) message = new byte[Math.max(payload.length, 16)];
+                    if (length + payload.length > message.length) {
+                        message = Arrays.copyOf(message, Math.max(message.length * 2, length + payload.length));
+                    }
+                    System.arraycopy(payload, 0, message, length, payload.length);
+                    length += payload.length;
+                    if (fin) return new String(message, 0, length, StandardCharsets.UTF_8);
+                }
+                default -> {
+                    close(1002, "Unknown opcode");
+                    throw new IOException("Unknown opcode " + opcode);
+                }
+            }
+        }
+    }
+
+    private int readByte() throws IOException {
+        var b = in.read();
+        if (b == -1) throw new EOFException();
+        return b;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            var read = in.read(buffer, offset, length);
+            if (read == -1) throw new EOFException();
+            offset += read;
+            length -= read;
+        }
+    }
+
+    /**
+     * Send a text message to the client
+     *
+     * @param message the message
+     * @throws IOException if the socket fails
+     */
+    void send(String message) throws IOException {
+        sendFrame(TEXT, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendFrame(int opcode, byte[] payload) throws IOException {
+        writeLock.lock();
+        try {
+            if (closeSent) return;
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length < 65536) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            } else {
+                out.write(127);
+                for (var shift = 56; shift >= 0; shift -= 8) out.write((int) ((long) payload.length >>> shift));
+            }
+            out.write(payload);
+            out.flush();
+            if (opcode == CLOSE) closeSent = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Start closing the connection, telling the client why
+     *
+     * @param code   the close status code
+     * @param reason the reason, for the client's logs
+     */
+    void close(int code, String reason) {
+        var text = reason.getBytes(StandardCharsets.UTF_8);
+        var payload = new byte[2 + text.length];
+        payload[0] = (byte) (code >>> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(text, 0, payload, 2, text.length);
+        try {
+            sendFrame(CLOSE, payload);
+        } catch (IOException e) {
+            //the client has gone already
+        }
+    }
+
+    /**
+     * Close the socket
+     */
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //nothing more to do
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package uk.ac.soton.comp1206.simulation;
+
+/**
+ * Applies one move to every board in a BoardBatch. There is a scalar kernel that runs anywhere and a vector kernel that
+ * runs the same steps on many boards per instruction; both must give exactly the same results.
+ */
+interface BatchKernel {
+
+    /**
+     * Place a piece on each board that has one to place and it fits, then clear and score any full lines
+     *
+     * @param occupied   each board's occupied cells, one bit per cell at index y * cols + x; updated
+     * @param moves      the cells each board's piece would cover, or 0 for no move
+     * @param lineMasks  the cells of every row and column of the board
+     * @param score      each board's score; updated
+     * @param multiplier each board's multiplier; updated
+     * @param placed     set to 1 for each board whose piece was placed, otherwise 0
+     * @param cleared    set to the number of lines each board cleared
+     * @param count      number of boards
+     */
+    void step(int[] occupied, int[] moves, int[] lineMasks, int[] score, int[] multiplier, int[] placed,
+              int[] cleared, int count);
+}
@@ -0,0 +1,95 @@
+package uk.ac.soton.comp1206.simulation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs a batch of headless games in parallel under a placement policy and aggregates their results.
+ *
+ * Game n always uses piece stream n of the batch seed, whichever thread plays it, so a batch gives the same results
+ * for the same seed and policy on any number of threads.
+ */
+public class BatchSimulation {
+
+    private static final Logger logger = LogManager.getLogger(BatchSimulation.class);
+
+    private final int cols;
+    private final int rows;
+    private final long seed;
+    private final int maxMoves;
+    private final Supplier<PlacementPolicy> policies;
+
+    /**
+     * Create a new batch
+     *
+     * @param cols     number of columns of each board
+     * @param rows     number of rows of each board
+     * @param seed     seed from which every game's piece stream is derived
+     * @param maxMoves the most pieces a game may place, for policies that never lose
+     * @param policies makes a policy for each thread
+     */
+    public BatchSimulation(int cols, int rows, long seed, int maxMoves, Supplier<PlacementPolicy> policies) {
+        this.cols = cols;
+        this.rows = rows;
+        this.seed = seed;
+        this.maxMoves = maxMoves;
+        this.policies = policies;
+    }
+
+    /**
+     * Play the games and wait for them to finish
+     *
+     * @param games   number of games
+     * @param threads number of threads to play on
+     * @return the aggregated results
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public SimulationStats run(long games, int threads) throws InterruptedException {
+        logger.info("Simulating {} games on {} threads", games, threads);
+        var next = new AtomicLong();
+        var total = new SimulationStats();
+        var workers = new ArrayList<Thread>();
+        for (var t = 0; t < threads; t++) {
+            var worker = new Thread(() -> {
+                var policy = policies.get();
+                var stats = new SimulationStats();
+                for (var game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                    stats.add(play(policy, game));
+                }
+                synchronized (total) {
+                    total.merge(stats);
+                }
+            }, "simulation-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        return total;
+    }
+
+    /**
+     * Play one game to the end
+     *
+     * @param policy the policy to play with
+     * @param game   the game's number in the batch
+     * @return the finished game
+     */
+    public GameEngine play(PlacementPolicy policy, long game) {
+        var engine = new GameEngine(cols, rows, PieceGenerator.forStream(seed, game));
+        policy.newGame(PieceGenerator.forStream(~seed, game).nextLong());
+        engine.initialiseGame();
+        while (!engine.isGameOver() && engine.getPiecesPlayed() < maxMoves) {
+            policy.move(engine);
+        }
+        return engine;
+    }
+}
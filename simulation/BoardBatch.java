@@ -0,0 +1,240 @@
+package uk.ac.soton.comp1206.simulation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PlacementTable;
+
+import java.util.Arrays;
+
+/**
+ * A BoardBatch holds thousands of small boards as arrays, one entry per board, and applies a move to all of them at
+ * once, for simulation and training workloads where a GameEngine per board would spend most of its time on objects.
+ *
+ * Each board is a single int with one bit per cell at index y * cols + x, as the Grid's occupancy board, so only boards
+ * of up to 32 cells fit (5x5 is 25). Alongside it each board has its score and multiplier. A step places a piece on
+ * every board given one, if it fits, then clears and scores full rows and columns exactly as Grid and
+ * GameEngine.afterPiece do: a cell in both a full row and a full column is cleared once, and the score and multiplier
+ * follow GameEngine.scoreFor and GameEngine.nextMultiplier.
+ * Dealing pieces, lives and the timer are left to the caller.
+ *
+ * Steps run on the vector kernel, which handles as many boards per instruction as the CPU's vectors hold, when the
+ * jdk.incubator.vector module is available (run with --add-modules jdk.incubator.vector), and otherwise on a scalar
+ * kernel giving the same results.
+ */
+public class BoardBatch {
+
+    private static final Logger logger = LogManager.getLogger(BoardBatch.class);
+
+    /**
+     * The vector kernel, or null if the vector API is not available
+     */
+    private static final BatchKernel VECTOR = loadVectorKernel();
+
+    private static final BatchKernel SCALAR = new ScalarBatchKernel();
+
+    private final int cols;
+    private final int rows;
+    private final int boards;
+    private final BatchKernel kernel;
+
+    /**
+     * The cells of every row, then every column
+     */
+    private final int[] lineMasks;
+
+    /**
+     * The table of placements, and for each piece the cells covered by each of its placements
+     */
+    private final PlacementTable placements;
+    private final int[][] placementCells;
+
+    /**
+     * Each board's occupied cells, score and multiplier
+     */
+    private final int[] occupied;
+    private final int[] score;
+    private final int[] multiplier;
+
+    /**
+     * The result of the last step on each board: 1 if its piece was placed, and the number of lines it cleared
+     */
+    private final int[] placed;
+    private final int[] cleared;
+
+    /**
+     * Create a batch of empty boards, stepped with the vector kernel if it is available
+     *
+     * @param cols   number of columns of each board
+     * @param rows   number of rows of each board
+     * @param boards number of boards
+     */
+    public BoardBatch(int cols, int rows, int boards) {
+        this(cols, rows, boards, true);
+    }
+
+    /**
+     * Create a batch of empty boards
+     *
+     * @param cols       number of columns of each board
+     * @param rows       number of rows of each board
+     * @param boards     number of boards
+     * @param vectorised true to step with the vector kernel if it is available, false always to use the scalar kernel
+     * @throws IllegalArgumentException if a board has more than 32 cells
+     */
+    public BoardBatch(int cols, int rows, int boards, boolean vectorised) {
+        if (cols * rows > Integer.SIZE) {
+            throw new IllegalArgumentException("A " + cols + "x" + rows + " board does not fit in an int");
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.boards = boards;
+        this.kernel = vectorised && VECTOR != null ? VECTOR : SCALAR;
+
+        lineMasks = new int[rows + cols];
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                var bit = 1 << (y * cols + x);
+                lineMasks[y] |= bit;
+                lineMasks[rows + x] |= bit;
+            }
+        }
+
+        placements = PlacementTable.forSize(cols, rows);
+        placementCells = new int[GamePiece.PIECES][];
+        for (var piece = 0; piece < GamePiece.PIECES; piece++) {
+            var count = placements.getPlacementCount(piece);
+            placementCells[piece] = new int[count];
+            for (var i = 0; i < count; i++) {
+                var gamePiece = GamePiece.createPiece(piece, placements.getPlacementRotation(piece, i));
+                var x = placements.getPlacementX(piece, i);
+                var y = placements.getPlacementY(piece, i);
+                for (var block = 0; block < gamePiece.getBlockCount(); block++) {
+                    placementCells[piece][i] |= 1 << ((y + gamePiece.getOffsetY(block)) * cols
+                            + x + gamePiece.getOffsetX(block));
+                }
+            }
+        }
+
+        occupied = new int[boards];
+        score = new int[boards];
+        multiplier = new int[boards];
+        placed = new int[boards];
+        cleared = new int[boards];
+        Arrays.fill(multiplier, 1);
+    }
+
+    private static BatchKernel loadVectorKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("batch.vector", "true"))) return null;
+        try {
+            return (BatchKernel) Class.forName(BoardBatch.class.getPackageName() + ".VectorBatchKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.info("Vector API not available, stepping boards one at a time");
+            return null;
+        }
+    }
+
+    /**
+     * Place a piece on every board given one, if it fits, and clear and score any full lines
+     *
+     * @param moves for each board, the cells its piece would cover as given by getPlacementCells, or 0 for no move
+     */
+    public void step(int[] moves) {
+        if (moves.length < boards) {
+            throw new IllegalArgumentException("Moves for " + moves.length + " boards given to a batch of " + boards);
+        }
+        kernel.step(occupied, moves, lineMasks, score, multiplier, placed, cleared, boards);
+    }
+
+    /**
+     * Get the cells a placement covers, for passing to step
+     *
+     * @param piece     piece number
+     * @param placement placement index in the PlacementTable for this size of board
+     * @return the cells, one bit per cell at index y * cols + x
+     */
+    public int getPlacementCells(int piece, int placement) {
+        return placementCells[piece][placement];
+    }
+
+    /**
+     * Check whether a placement fits on a board
+     *
+     * @param board the board
+     * @param cells the cells the placement covers
+     * @return true if none of the cells is occupied
+     */
+    public boolean fits(int board, int cells) {
+        return (occupied[board] & cells) == 0;
+    }
+
+    /**
+     * Empty a board and reset its score and multiplier
+     *
+     * @param board the board
+     */
+    public void reset(int board) {
+        occupied[board] = 0;
+        score[board] = 0;
+        multiplier[board] = 1;
+        placed[board] = 0;
+        cleared[board] = 0;
+    }
+
+    /**
+     * Check whether the vector kernel steps this batch
+     *
+     * @return true if vectorised
+     */
+    public boolean isVectorised() {
+        return kernel != SCALAR;
+    }
+
+    public boolean isPlaced(int board) {
+        return placed[board] != 0;
+    }
+
+    public int getCleared(int board) {
+        return cleared[board];
+    }
+
+    public int getOccupied(int board) {
+        return occupied[board];
+    }
+
+    public int getScore(int board) {
+        return score[board];
+    }
+
+    public int getMultiplier(int board) {
+        return multiplier[board];
+    }
+
+    /**
+     * Get a board's level, which follows from its score as in GameEngine.score
+     *
+     * @param board the board
+     * @return the level
+     */
+    public int getLevel(int board) {
+        return GameEngine.levelFor(score[board]);
+    }
+
+    public PlacementTable getPlacements() {
+        return placements;
+    }
+
+    public int getBoards() {
+        return boards;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * Plays whichever of the current and following pieces, at whichever placement, completes the most lines. Ties go to the
+ * placement that brings its rows and columns closest to full.
+ *
+ * Both pieces are valued against the placement table without touching the engine, so the only swap made is the one
+ * before playing the following piece, and the move log holds no more than the game needs.
+ */
+public class GreedyPolicy implements PlacementPolicy {
+
+    /**
+     * The value of the placement last returned by best
+     */
+    private long bestValue;
+
+    @Override
+    public void move(GameEngine engine) {
+        var current = best(engine, engine.getCurrentPiece().getPiece());
+        var currentValue = bestValue;
+        var following = best(engine, engine.getFollowingPiece().getPiece());
+        if (following >= 0 && (current < 0 || bestValue > currentValue)) {
+            engine.swapCurrentPiece();
+            PlacementPolicy.play(engine, following);
+            return;
+        }
+        if (current < 0 || !PlacementPolicy.play(engine, current)) {
+            engine.timerExpired();
+        }
+    }
+
+    /**
+     * Find the best placement of a piece
+     *
+     * @param piece piece number
+     * @return placement index, or -1 if the piece does not fit anywhere
+     */
+    private int best(GameEngine engine, int piece) {
+        var table = engine.getPlacements();
+        var best = -1;
+        bestValue = Long.MIN_VALUE;
+        for (var placement = 0; placement < table.getPlacementCount(piece); placement++) {
+            if (!table.fits(engine.getGrid(), piece, placement)) continue;
+            var value = value(engine, piece, placement);
+            if (value > bestValue) {
+                best = placement;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Value a placement of a piece: lines completed first, then how full its rows and columns become
+     */
+    private long value(GameEngine engine, int piece, int placement) {
+        var table = engine.getPlacements();
+        Grid grid = engine.getGrid();
+        var shape = GamePiece.createPiece(piece, table.getPlacementRotation(piece, placement));
+        var x = table.getPlacementX(piece, placement);
+        var y = table.getPlacementY(piece, placement);
+
+        //count the blocks added to each of the (at most 3) rows and columns under the piece
+        var rowAdds = new int[3];
+        var columnAdds = new int[3];
+        for (var block = 0; block < shape.getBlockCount(); block++) {
+            rowAdds[shape.getOffsetY(block) + 1]++;
+            columnAdds[shape.getOffsetX(block) + 1]++;
+        }
+        long lines = 0;
+        long fill = 0;
+        for (var i = 0; i < 3; i++) {
+            if (rowAdds[i] > 0) {
+                var filled = grid.getRowCount(y + i - 1) + rowAdds[i];
+                if (filled == grid.getCols()) lines++;
+                fill += filled;
+            }
+            if (columnAdds[i] > 0) {
+                var filled = grid.getColumnCount(x + i - 1) + columnAdds[i];
+                if (filled == grid.getRows()) lines++;
+                fill += filled;
+            }
+        }
+        return lines << 32 | fill;
+    }
+}
@@ -0,0 +1,64 @@
+package uk.ac.soton.comp1206.simulation;
+
+import java.io.PrintStream;
+
+/**
+ * Counts values into a fixed number of equal-width buckets, with anything beyond the last bucket counted together, so
+ * it stays the same size however many values are added.
+ */
+public class Histogram {
+
+    private final long width;
+    private final long[] counts;
+
+    /**
+     * Create a new histogram
+     *
+     * @param width   the width of each bucket
+     * @param buckets the number of buckets before the overflow bucket
+     */
+    public Histogram(long width, int buckets) {
+        this.width = width;
+        this.counts = new long[buckets + 1];
+    }
+
+    /**
+     * Add a value
+     *
+     * @param value the value, at least 0
+     */
+    public void add(long value) {
+        counts[(int) Math.min(value / width, counts.length - 1)]++;
+    }
+
+    /**
+     * Combine another histogram with the same buckets into this one
+     *
+     * @param other the histogram to merge in
+     */
+    public void merge(Histogram other) {
+        if (other.width != width || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Histograms have different buckets");
+        }
+        for (var i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * Print the non-empty buckets as a bar chart
+     *
+     * @param out where to print
+     */
+    public void print(PrintStream out) {
+        var most = 1L;
+        for (var count : counts) most = Math.max(most, count);
+        for (var i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            var label = i < counts.length - 1
+                    ? String.format("%8d-%-8d", i * width, (i + 1) * width - 1)
+                    : String.format("%8d+        ", i * width);
+            out.printf("  %s %10d %s%n", label, counts[i], "#".repeat((int) (counts[i] * 50 / most)));
+        }
+    }
+}
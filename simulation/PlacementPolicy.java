@@ -0,0 +1,41 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.PlacementTable;
+
+/**
+ * A PlacementPolicy decides each move of a headless game. Each simulation thread has its own policy, so a policy may
+ * keep state between moves without locking.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Called before each game, with a seed for any randomness the policy uses, so that runs can be repeated exactly
+     *
+     * @param seed the seed for this game
+     */
+    default void newGame(long seed) {
+    }
+
+    /**
+     * Make one move: place a piece, swap, or let the timer run out
+     *
+     * @param engine the game to move in
+     */
+    void move(GameEngine engine);
+
+    /**
+     * Place the current piece using one of the placements in the engine's placement table, rotating it first
+     *
+     * @param engine    the game to move in
+     * @param placement placement index of the current piece
+     * @return true if the piece was placed
+     */
+    static boolean play(GameEngine engine, int placement) {
+        PlacementTable table = engine.getPlacements();
+        var current = engine.getCurrentPiece();
+        var piece = current.getPiece();
+        engine.rotateCurrentPiece(table.getPlacementRotation(piece, placement) - current.getRotation());
+        return engine.playPiece(table.getPlacementX(piece, placement), table.getPlacementY(piece, placement));
+    }
+}
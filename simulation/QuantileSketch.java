@@ -0,0 +1,81 @@
+package uk.ac.soton.comp1206.simulation;
+
+/**
+ * Estimates quantiles of a stream of non-negative whole numbers in constant memory.
+ *
+ * Values below 64 are counted exactly. Larger values are counted in log-linear buckets, 32 per power of two, so any
+ * quantile is returned to within about 3% of its true value. Sketches can be merged.
+ */
+public class QuantileSketch {
+
+    /**
+     * Buckets per power of two, as a number of bits
+     */
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+
+    /**
+     * Enough buckets for every long
+     */
+    private static final int BUCKETS = 2 * SUB + (63 - SUB_BITS - 1) * SUB;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total = 0;
+
+    /**
+     * Add a value
+     *
+     * @param value the value, at least 0
+     */
+    public void add(long value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value: " + value);
+        counts[bucketOf(value)]++;
+        total++;
+    }
+
+    /**
+     * Combine another sketch into this one
+     *
+     * @param other the sketch to merge in
+     */
+    public void merge(QuantileSketch other) {
+        for (var i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Estimate a quantile
+     *
+     * @param q the quantile, from 0 to 1 (0.5 is the median)
+     * @return the estimated value, or 0 if nothing was added
+     */
+    public long quantile(double q) {
+        if (total == 0) return 0;
+        var rank = Math.max(1, (long) Math.ceil(q * total));
+        var seen = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return middleOf(i);
+        }
+        return middleOf(BUCKETS - 1);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB) return (int) value;
+        var shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return 2 * SUB + (shift - 1) * SUB + (int) ((value >>> shift) - SUB);
+    }
+
+    private static long middleOf(int bucket) {
+        if (bucket < 2 * SUB) return bucket;
+        var shift = (bucket - 2 * SUB) / SUB + 1;
+        var mantissa = (long) ((bucket - 2 * SUB) % SUB + SUB);
+        return (mantissa << shift) + (1L << (shift - 1));
+    }
+}
@@ -0,0 +1,47 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+/**
+ * Plays the current piece at a random legal placement, swapping first if only the following piece fits. A baseline for
+ * comparing other policies against.
+ */
+public class RandomPolicy implements PlacementPolicy {
+
+    private PieceGenerator random = new PieceGenerator(0);
+
+    @Override
+    public void newGame(long seed) {
+        random = new PieceGenerator(seed);
+    }
+
+    @Override
+    public void move(GameEngine engine) {
+        if (!playRandom(engine)) {
+            engine.swapCurrentPiece();
+            if (!playRandom(engine)) {
+                //nothing fits, which the engine only allows once the game is over
+                engine.timerExpired();
+            }
+        }
+    }
+
+    /**
+     * Pick a random placement and walk forward from it to the first that fits
+     */
+    private boolean playRandom(GameEngine engine) {
+        var table = engine.getPlacements();
+        var piece = engine.getCurrentPiece().getPiece();
+        var count = table.getPlacementCount(piece);
+        if (count == 0) return false;
+        var first = (int) (((random.nextLong() >>> 32) * count) >>> 32);
+        for (var i = 0; i < count; i++) {
+            var placement = (first + i) % count;
+            if (table.fits(engine.getGrid(), piece, placement)) {
+                return PlacementPolicy.play(engine, placement);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.soton.comp1206.simulation;
+
+/**
+ * Count, mean, variance, minimum and maximum of a stream of values, in constant memory. The mean and variance use
+ * Welford's method, and two sets of statistics can be merged, so each thread can keep its own and combine them at the
+ * end.
+ */
+public class RunningStats {
+
+    private long count = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Add a value
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        count++;
+        var delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Combine another set of statistics into this one
+     *
+     * @param other the statistics to merge in
+     */
+    public void merge(RunningStats other) {
+        if (other.count == 0) return;
+        var total = count + other.count;
+        var delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Get the sample variance
+     *
+     * @return variance, or 0 with fewer than two values
+     */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) return "no values";
+        return String.format("mean %.2f, sd %.2f, min %.0f, max %.0f", mean, getStandardDeviation(), min, max);
+    }
+}
@@ -0,0 +1,50 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The BatchKernel that steps one board at a time, used where the vector API is not available
+ */
+class ScalarBatchKernel implements BatchKernel {
+
+    @Override
+    public void step(int[] occupied, int[] moves, int[] lineMasks, int[] score, int[] multiplier, int[] placed,
+                     int[] cleared, int count) {
+        step(occupied, moves, lineMasks, score, multiplier, placed, cleared, 0, count);
+    }
+
+    /**
+     * Step the boards from one index up to another, also used by the vector kernel for boards left over from its last
+     * full vector
+     */
+    static void step(int[] occupied, int[] moves, int[] lineMasks, int[] score, int[] multiplier, int[] placed,
+                     int[] cleared, int from, int to) {
+        for (var i = from; i < to; i++) {
+            var move = moves[i];
+            var cells = occupied[i];
+            if (move == 0 || (cells & move) != 0) {
+                placed[i] = 0;
+                cleared[i] = 0;
+                continue;
+            }
+            cells |= move;
+
+            //a cell shared by a full row and a full column is only cleared and counted once
+            var clear = 0;
+            var lines = 0;
+            for (var line : lineMasks) {
+                if ((cells & line) == line) {
+                    clear |= line;
+                    lines++;
+                }
+            }
+            occupied[i] = cells & ~clear;
+
+            var thisScore = GameEngine.scoreFor(lines, Integer.bitCount(clear), multiplier[i]);
+            score[i] += thisScore;
+            multiplier[i] = GameEngine.nextMultiplier(multiplier[i], thisScore);
+            placed[i] = 1;
+            cleared[i] = lines;
+        }
+    }
+}
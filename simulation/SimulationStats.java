@@ -0,0 +1,99 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+import java.io.PrintStream;
+
+/**
+ * The results of a batch of simulated games, aggregated as they finish so memory stays the same however many games
+ * are run. Each simulation thread keeps its own and they are merged at the end.
+ */
+public class SimulationStats {
+
+    /**
+     * The width of each score histogram bucket, one level's worth of score
+     */
+    private static final int SCORE_BUCKET = 1000;
+
+    private final RunningStats score = new RunningStats();
+    private final RunningStats level = new RunningStats();
+    private final RunningStats lines = new RunningStats();
+    private final RunningStats moves = new RunningStats();
+    private final RunningStats peakMultiplier = new RunningStats();
+    private final QuantileSketch scoreQuantiles = new QuantileSketch();
+    private final QuantileSketch movesQuantiles = new QuantileSketch();
+    private final Histogram scoreHistogram = new Histogram(SCORE_BUCKET, 40);
+
+    /**
+     * Record a finished game
+     *
+     * @param engine the game
+     */
+    public void add(GameEngine engine) {
+        score.add(engine.getScore());
+        level.add(engine.getLevel());
+        lines.add(engine.getLinesCleared());
+        moves.add(engine.getPiecesPlayed());
+        peakMultiplier.add(engine.getPeakMultiplier());
+        scoreQuantiles.add(engine.getScore());
+        movesQuantiles.add(engine.getPiecesPlayed());
+        scoreHistogram.add(engine.getScore());
+    }
+
+    /**
+     * Combine another set of results into this one
+     *
+     * @param other the results to merge in
+     */
+    public void merge(SimulationStats other) {
+        score.merge(other.score);
+        level.merge(other.level);
+        lines.merge(other.lines);
+        moves.merge(other.moves);
+        peakMultiplier.merge(other.peakMultiplier);
+        scoreQuantiles.merge(other.scoreQuantiles);
+        movesQuantiles.merge(other.movesQuantiles);
+        scoreHistogram.merge(other.scoreHistogram);
+    }
+
+    public long getGames() {
+        return score.getCount();
+    }
+
+    /**
+     * Get the total number of pieces placed over every game
+     *
+     * @return pieces placed
+     */
+    public long getTotalMoves() {
+        return Math.round(moves.getMean() * moves.getCount());
+    }
+
+    public RunningStats getScore() {
+        return score;
+    }
+
+    public QuantileSketch getScoreQuantiles() {
+        return scoreQuantiles;
+    }
+
+    /**
+     * Print a summary of the results
+     *
+     * @param out where to print
+     */
+    public void print(PrintStream out) {
+        out.println("Games:           " + getGames());
+        out.println("Score:           " + score);
+        out.printf("Score quantiles: p10 %d, p50 %d, p90 %d, p99 %d%n", scoreQuantiles.quantile(0.1),
+                scoreQuantiles.quantile(0.5), scoreQuantiles.quantile(0.9), scoreQuantiles.quantile(0.99));
+        out.println("Level:           " + level);
+        out.println("Lines cleared:   " + lines);
+        out.println("Moves:           " + moves);
+        out.printf("Move quantiles:  p10 %d, p50 %d, p90 %d, p99 %d%n", movesQuantiles.quantile(0.1),
+                movesQuantiles.quantile(0.5), movesQuantiles.quantile(0.9), movesQuantiles.quantile(0.99));
+        out.println("Peak multiplier: " + peakMultiplier);
+        out.println("Score histogram:");
+        scoreHistogram.print(out);
+    }
+}
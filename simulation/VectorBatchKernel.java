@@ -0,0 +1,63 @@
+package uk.ac.soton.comp1206.simulation;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The BatchKernel that steps as many boards at once as the CPU's widest vector holds ints, with the incubating vector
+ * API. It is only loaded when the jdk.incubator.vector module is present, so the rest of the game runs without it.
+ *
+ * Each step of the scalar kernel becomes a masked lane operation: the legality check is a compare producing a mask of
+ * boards that place their piece, and each row and column is checked for every board with one AND and one compare.
+ */
+class VectorBatchKernel implements BatchKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void step(int[] occupied, int[] moves, int[] lineMasks, int[] score, int[] multiplier, int[] placed,
+                     int[] cleared, int count) {
+        var bound = SPECIES.loopBound(count);
+        var zero = IntVector.zero(SPECIES);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            var cells = IntVector.fromArray(SPECIES, occupied, i);
+            var move = IntVector.fromArray(SPECIES, moves, i);
+            var legal = move.compare(VectorOperators.NE, 0)
+                    .and(cells.and(move).compare(VectorOperators.EQ, 0));
+            cells = cells.lanewise(VectorOperators.OR, move, legal);
+
+            var clear = zero;
+            var lines = zero;
+            for (var line : lineMasks) {
+                var full = cells.and(line).compare(VectorOperators.EQ, line).and(legal);
+                clear = clear.lanewise(VectorOperators.OR, line, full);
+                lines = lines.lanewise(VectorOperators.ADD, 1, full);
+            }
+            cells.and(clear.not()).intoArray(occupied, i);
+
+            //GameEngine.scoreFor and GameEngine.nextMultiplier, lane by lane
+            var mult = IntVector.fromArray(SPECIES, multiplier, i);
+            var thisScore = lines.mul(bitCount(clear)).mul(GameEngine.SCORE_PER_BLOCK).mul(mult);
+            IntVector.fromArray(SPECIES, score, i).add(thisScore).intoArray(score, i);
+            var scored = thisScore.compare(VectorOperators.GT, 0);
+            var nextMult = IntVector.broadcast(SPECIES, 1).blend(mult.add(1), scored);
+            mult.blend(nextMult, legal).intoArray(multiplier, i);
+            zero.blend(1, legal).intoArray(placed, i);
+            lines.intoArray(cleared, i);
+        }
+        ScalarBatchKernel.step(occupied, moves, lineMasks, score, multiplier, placed, cleared, i, count);
+    }
+
+    /**
+     * Count the set bits in each lane, as Integer.bitCount
+     */
+    private static IntVector bitCount(IntVector x) {
+        x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x55555555));
+        x = x.and(0x33333333).add(x.lanewise(VectorOperators.LSHR, 2).and(0x33333333));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F);
+        return x.mul(0x01010101).lanewise(VectorOperators.LSHR, 24);
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.soton.comp1206.timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task scheduled on a TimerWheel, which can be cancelled until it runs
+ */
+public class Timeout {
+
+    static final int PENDING = 0;
+    static final int CANCELLED = 1;
+    static final int EXPIRED = 2;
+
+    private final TimerWheel wheel;
+    final Runnable task;
+
+    /**
+     * When the task is due, in nanoseconds since the wheel started
+     */
+    final long deadline;
+
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    /**
+     * Turns of the wheel left before the task is due, and its place in its bucket. Only touched by the wheel's thread.
+     */
+    long rounds;
+    Timeout next;
+    Timeout previous;
+    TimerWheel.Bucket bucket;
+
+    Timeout(TimerWheel wheel, Runnable task, long deadline) {
+        this.wheel = wheel;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cancel the task, if it has not run yet. Takes constant time: the wheel unlinks it on its next tick.
+     *
+     * @return true if the task was cancelled, false if it had already run or been cancelled
+     */
+    public boolean cancel() {
+        if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+        wheel.cancelled(this);
+        return true;
+    }
+
+    /**
+     * Claim the task to run it
+     *
+     * @return false if it was cancelled first
+     */
+    boolean expire() {
+        return state.compareAndSet(PENDING, EXPIRED);
+    }
+
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state.get() == EXPIRED;
+    }
+}
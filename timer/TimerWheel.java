@@ -0,0 +1,217 @@
+package uk.ac.soton.comp1206.timer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel: a ring of buckets, one per tick, turned by a single daemon thread. A task due in n ticks goes
+ * in the bucket n ticks ahead, with the number of whole turns of the ring still to wait, so scheduling and cancelling
+ * take constant time however many tasks are pending. This lets the piece timers of thousands of games share one
+ * thread, rather than each game holding its own scheduled executor.
+ *
+ * Tasks fire up to one tick late and run on the wheel's thread, so they should be short: the game's timer task just
+ * hands its work to the JavaFX thread.
+ *
+ * New and cancelled tasks are passed to the wheel's thread through lock-free queues, so any thread may schedule or
+ * cancel. Only the wheel's thread touches the buckets.
+ */
+public class TimerWheel implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(TimerWheel.class);
+
+    /**
+     * The wheel shared by every game, created when first used
+     */
+    private static TimerWheel shared = null;
+
+    /**
+     * A list of the tasks in one slot of the wheel
+     */
+    static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) head = timeout;
+            else tail.next = timeout;
+            tail = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.previous == null) head = timeout.next;
+            else timeout.previous.next = timeout.next;
+            if (timeout.next == null) tail = timeout.previous;
+            else timeout.next.previous = timeout.previous;
+            timeout.bucket = null;
+            timeout.next = null;
+            timeout.previous = null;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+
+    /**
+     * Tasks scheduled or cancelled since the last tick, waiting for the wheel's thread
+     */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> removed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of tasks scheduled and neither run nor cancelled
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * When the wheel started, which deadlines are measured from
+     */
+    private final long startTime;
+
+    /**
+     * The next tick to process. Only touched by the wheel's thread.
+     */
+    private long tick = 0;
+
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Get the wheel shared by every game: 512 slots of 10ms, covering just over 5 seconds per turn
+     *
+     * @return the wheel
+     */
+    public static synchronized TimerWheel shared() {
+        if (shared == null) {
+            shared = new TimerWheel("timer-wheel", 10, TimeUnit.MILLISECONDS, 512);
+        }
+        return shared;
+    }
+
+    /**
+     * Create and start a new wheel
+     *
+     * @param name  name of the wheel's thread
+     * @param tick  length of one tick
+     * @param unit  unit of the tick
+     * @param slots number of buckets, rounded up to a power of two
+     */
+    public TimerWheel(String name, long tick, TimeUnit unit, int slots) {
+        tickNanos = Math.max(1, unit.toNanos(tick));
+        var size = slots <= 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        buckets = new Bucket[size];
+        for (var i = 0; i < size; i++) buckets[i] = new Bucket();
+        mask = size - 1;
+
+        startTime = System.nanoTime();
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedule a task to run once after a delay
+     *
+     * @param task  the task
+     * @param delay how long to wait
+     * @param unit  unit of the delay
+     * @return the timeout, which can cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) throw new IllegalStateException("Timer wheel has been closed");
+        var timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Called by a Timeout once it has been cancelled, so the wheel's thread unlinks it
+     */
+    void cancelled(Timeout timeout) {
+        pending.decrementAndGet();
+        removed.add(timeout);
+    }
+
+    private void run() {
+        while (running) {
+            var deadline = (tick + 1) * tickNanos;
+            var wait = deadline - (System.nanoTime() - startTime);
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            unlinkCancelled();
+            placeAdded();
+            expire(buckets[(int) (tick & mask)], deadline);
+            tick++;
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = removed.poll()) != null) {
+            //tasks cancelled before they were placed have no bucket, and are dropped by placeAdded
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    private void placeAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+            var due = timeout.deadline / tickNanos;
+            timeout.rounds = (due - tick) / buckets.length;
+            //tasks already due go in the current bucket
+            buckets[(int) (Math.max(due, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket, long deadline) {
+        var timeout = bucket.head;
+        while (timeout != null) {
+            var next = timeout.next;
+            if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                bucket.remove(timeout);
+                if (timeout.expire()) {
+                    pending.decrementAndGet();
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable e) {
+                        logger.error("Timer task failed", e);
+                    }
+                }
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Get the number of tasks waiting to run
+     *
+     * @return pending tasks
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the wheel. Tasks not yet run never will be.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+}
@@ -0,0 +1,155 @@
+package uk.ac.soton.comp1206.util;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A map from ints to objects held in an open-addressed table, with no boxing of keys and no allocation except when the
+ * table grows. Values may not be null; a null value marks a free slot.
+ *
+ * @param <V> the type of value
+ */
+public class IntObjectMap<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    /**
+     * Create a new, empty map
+     */
+    public IntObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Create a new, empty map with room for the given number of entries before it grows
+     *
+     * @param expected number of entries expected
+     */
+    public IntObjectMap(int expected) {
+        var capacity = IntTables.capacityFor(expected);
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Get the value for a key
+     *
+     * @param key the key
+     * @return the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        var mask = keys.length - 1;
+        for (var slot = IntTables.slotOf(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return (V) values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * Set the value for a key
+     *
+     * @param key   the key
+     * @param value the value, not null
+     * @return the previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new NullPointerException("IntObjectMap values may not be null");
+        var mask = keys.length - 1;
+        var slot = IntTables.slotOf(key, mask);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                var previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) resize(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Get the value for a key, first creating and adding it if there is none
+     *
+     * @param key     the key
+     * @param factory makes the value from the key
+     * @return the value
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        var value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Remove a key and its value
+     *
+     * @param key the key
+     * @return the value removed, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        var mask = keys.length - 1;
+        var slot = IntTables.slotOf(key, mask);
+        while (values[slot] == null || keys[slot] != key) {
+            if (values[slot] == null) return null;
+            slot = (slot + 1) & mask;
+        }
+        var removed = (V) values[slot];
+        //shift back any entries that probed past the removed one, so lookups still find them
+        var next = (slot + 1) & mask;
+        while (values[next] != null) {
+            var home = IntTables.slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[slot] = null;
+        size--;
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        var mask = capacity - 1;
+        for (var i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            var slot = IntTables.slotOf(oldKeys[i], mask);
+            while (values[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Remove every entry, keeping the table's capacity
+     */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,163 @@
+package uk.ac.soton.comp1206.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of ints held in an open-addressed table, with no boxing and no allocation except when the table grows. Suits
+ * packed coordinates (see Coordinates) and cell indexes.
+ *
+ * Slots holding 0 are free, so 0 itself is tracked with a separate flag.
+ */
+public class IntSet {
+
+    private int[] keys;
+    private int size = 0;
+    private boolean hasZero = false;
+
+    /**
+     * Create a new, empty set
+     */
+    public IntSet() {
+        this(16);
+    }
+
+    /**
+     * Create a new, empty set with room for the given number of ints before it grows
+     *
+     * @param expected number of ints expected
+     */
+    public IntSet(int expected) {
+        keys = new int[IntTables.capacityFor(expected)];
+    }
+
+    /**
+     * Add an int
+     *
+     * @param key the int
+     * @return true if it was not already in the set
+     */
+    public boolean add(int key) {
+        if (key == 0) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        var mask = keys.length - 1;
+        var slot = IntTables.slotOf(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length) resize(keys.length * 2);
+        return true;
+    }
+
+    /**
+     * Check whether an int is in the set
+     *
+     * @param key the int
+     * @return true if present
+     */
+    public boolean contains(int key) {
+        if (key == 0) return hasZero;
+        var mask = keys.length - 1;
+        for (var slot = IntTables.slotOf(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove an int
+     *
+     * @param key the int
+     * @return true if it was in the set
+     */
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!hasZero) return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+        var mask = keys.length - 1;
+        var slot = IntTables.slotOf(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) return false;
+            slot = (slot + 1) & mask;
+        }
+        //shift back any keys that probed past the removed one, so lookups still find them
+        var next = (slot + 1) & mask;
+        while (keys[next] != 0) {
+            var home = IntTables.slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[slot] = 0;
+        size--;
+        return true;
+    }
+
+    private void resize(int capacity) {
+        var old = keys;
+        keys = new int[capacity];
+        var mask = capacity - 1;
+        for (var key : old) {
+            if (key == 0) continue;
+            var slot = IntTables.slotOf(key, mask);
+            while (keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = key;
+        }
+    }
+
+    /**
+     * Call an action with each int in the set, in no particular order
+     *
+     * @param action the action
+     */
+    public void forEach(IntConsumer action) {
+        if (hasZero) action.accept(0);
+        for (var key : keys) {
+            if (key != 0) action.accept(key);
+        }
+    }
+
+    /**
+     * Copy the ints in the set into a new array, in no particular order
+     *
+     * @return the ints
+     */
+    public int[] toArray() {
+        var result = new int[size];
+        var i = 0;
+        if (hasZero) result[i++] = 0;
+        for (var key : keys) {
+            if (key != 0) result[i++] = key;
+        }
+        return result;
+    }
+
+    /**
+     * Remove every int, keeping the table's capacity
+     */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0);
+        hasZero = false;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
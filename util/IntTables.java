@@ -0,0 +1,32 @@
+package uk.ac.soton.comp1206.util;
+
+/**
+ * Sizing and hashing shared by the open-addressed int tables
+ */
+final class IntTables {
+
+    private IntTables() {
+    }
+
+    /**
+     * Get a power-of-two table size that holds the expected number of keys at most half full
+     */
+    static int capacityFor(int expected) {
+        var needed = Math.max(4, expected * 2);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /**
+     * Pick the home slot of a key. Packed coordinates differ mostly in their low bits of each half, so the key is
+     * scrambled (the murmur3 finaliser) before masking.
+     */
+    static int slotOf(int key, int mask) {
+        var h = key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+}